@@ -0,0 +1,8 @@
+package com.dylanvann.fastimage;
+
+public enum FastImageBitmapFormat {
+    AUTO,
+    RGB_565,
+    ARGB_8888,
+    HARDWARE
+}
@@ -0,0 +1,180 @@
+package com.dylanvann.fastimage;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.os.Bundle;
+
+import com.bumptech.glide.load.engine.cache.DiskCache;
+import com.facebook.react.bridge.ReadableMap;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Configuration of Glide's caches and thread pools, and of the HTTP client images are loaded with.
+ * <p>
+ * Values are read from meta-data in the app's manifest, e.g.
+ * {@code <meta-data android:name="com.dylanvann.fastimage.diskCacheSize" android:value="104857600" />},
+ * and from the configuration saved by {@code FastImage.configure} in JS, which takes precedence.
+ * Glide reads the configuration once, when it is initialized.
+ */
+final class FastImageCacheConfig {
+    static final String DISK_CACHE_SIZE = "diskCacheSize";
+    static final String DISK_CACHE_LOCATION = "diskCacheLocation";
+    static final String DISK_CACHE_NAME = "diskCacheName";
+    static final String MEMORY_CACHE_SIZE = "memoryCacheSize";
+    static final String BITMAP_POOL_SIZE = "bitmapPoolSize";
+    static final String SMALL_IMAGE_CACHE_SIZE = "smallImageCacheSize";
+    static final String SMALL_IMAGE_MAX_SIZE = "smallImageMaxSize";
+    static final String SOURCE_THREAD_COUNT = "sourceThreadCount";
+    static final String DISK_CACHE_THREAD_COUNT = "diskCacheThreadCount";
+    static final String HTTP_CACHE_SIZE = "httpCacheSize";
+    static final String WEB_MEMORY_CACHE_TIME_TO_LIVE = "webMemoryCacheTtl";
+    static final String MAX_REQUESTS = "maxRequests";
+    static final String MAX_REQUESTS_PER_HOST = "maxRequestsPerHost";
+    static final String CONNECTION_POOL_SIZE = "connectionPoolSize";
+    static final String CONNECTION_KEEP_ALIVE = "connectionKeepAlive";
+    static final String CONNECT_TIMEOUT = "connectTimeout";
+    static final String READ_TIMEOUT = "readTimeout";
+    static final String DNS_CACHE_TIME_TO_LIVE = "dnsCacheTtl";
+    static final String OFFSCREEN_CANCEL_DELAY = "offscreenCancelDelay";
+    static final String FLING_VELOCITY = "flingVelocity";
+
+    static final String DISK_CACHE_LOCATION_INTERNAL = "internal";
+    static final String DISK_CACHE_LOCATION_EXTERNAL = "external";
+
+    private static final String[] NUMBER_KEYS = {
+            DISK_CACHE_SIZE,
+            MEMORY_CACHE_SIZE,
+            BITMAP_POOL_SIZE,
+            SMALL_IMAGE_CACHE_SIZE,
+            SMALL_IMAGE_MAX_SIZE,
+            SOURCE_THREAD_COUNT,
+            DISK_CACHE_THREAD_COUNT,
+            HTTP_CACHE_SIZE,
+            WEB_MEMORY_CACHE_TIME_TO_LIVE,
+            MAX_REQUESTS,
+            MAX_REQUESTS_PER_HOST,
+            CONNECTION_POOL_SIZE,
+            CONNECTION_KEEP_ALIVE,
+            CONNECT_TIMEOUT,
+            READ_TIMEOUT,
+            DNS_CACHE_TIME_TO_LIVE,
+            OFFSCREEN_CANCEL_DELAY,
+            FLING_VELOCITY,
+    };
+    private static final String[] STRING_KEYS = {
+            DISK_CACHE_LOCATION,
+            DISK_CACHE_NAME,
+    };
+
+    private static final String META_DATA_PREFIX = "com.dylanvann.fastimage.";
+    private static final String PREFERENCES_NAME = "FastImageCacheConfig";
+
+    private final Map<String, Object> values;
+
+    private FastImageCacheConfig(Map<String, Object> values) {
+        this.values = values;
+    }
+
+    static FastImageCacheConfig load(Context context) {
+        final Map<String, Object> values = new HashMap<>();
+        final Bundle metaData = getMetaData(context);
+        if (metaData != null) {
+            for (String key : NUMBER_KEYS) {
+                final Object value = metaData.get(META_DATA_PREFIX + key);
+                if (value instanceof Number) {
+                    values.put(key, ((Number) value).longValue());
+                } else if (value instanceof String) {
+                    try {
+                        values.put(key, Long.parseLong((String) value));
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+            }
+            for (String key : STRING_KEYS) {
+                final String value = metaData.getString(META_DATA_PREFIX + key);
+                if (value != null) {
+                    values.put(key, value);
+                }
+            }
+        }
+
+        final SharedPreferences preferences = getPreferences(context);
+        for (String key : NUMBER_KEYS) {
+            if (preferences.contains(key)) {
+                values.put(key, preferences.getLong(key, 0));
+            }
+        }
+        for (String key : STRING_KEYS) {
+            final String value = preferences.getString(key, null);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        return new FastImageCacheConfig(values);
+    }
+
+    /**
+     * Replaces the configuration saved from JS.
+     */
+    static void save(Context context, ReadableMap config) {
+        final SharedPreferences.Editor editor = getPreferences(context).edit().clear();
+        for (String key : NUMBER_KEYS) {
+            if (config.hasKey(key) && !config.isNull(key)) {
+                editor.putLong(key, (long) config.getDouble(key));
+            }
+        }
+        for (String key : STRING_KEYS) {
+            if (config.hasKey(key) && !config.isNull(key)) {
+                editor.putString(key, config.getString(key));
+            }
+        }
+        editor.apply();
+    }
+
+    long getLong(String key, long fallback) {
+        final Object value = values.get(key);
+        return value instanceof Long && (Long) value >= 0 ? (Long) value : fallback;
+    }
+
+    int getInt(String key, int fallback) {
+        return (int) Math.min(getLong(key, fallback), Integer.MAX_VALUE);
+    }
+
+    File getDiskCacheDirectory(Context context) {
+        final String name = values.containsKey(DISK_CACHE_NAME)
+                ? (String) values.get(DISK_CACHE_NAME)
+                : DiskCache.Factory.DEFAULT_DISK_CACHE_DIR;
+        File root = null;
+        if (DISK_CACHE_LOCATION_EXTERNAL.equals(values.get(DISK_CACHE_LOCATION))) {
+            root = context.getExternalCacheDir();
+        }
+        if (root == null) {
+            // Internal storage, or external storage isn't available.
+            root = context.getCacheDir();
+        }
+        return new File(root, name);
+    }
+
+    @Nullable
+    private static Bundle getMetaData(Context context) {
+        try {
+            final ApplicationInfo info = context
+                    .getPackageManager()
+                    .getApplicationInfo(context.getPackageName(), PackageManager.GET_META_DATA);
+            return info.metaData;
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+}
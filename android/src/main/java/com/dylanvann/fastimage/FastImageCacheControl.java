@@ -3,6 +3,7 @@ package com.dylanvann.fastimage;
 public enum FastImageCacheControl {
     IMMUTABLE,
     WEB,
-    CACHE_ONLY
+    CACHE_ONLY,
+    STALE_WHILE_REVALIDATE
 }
 
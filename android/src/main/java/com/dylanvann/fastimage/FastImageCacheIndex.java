@@ -0,0 +1,330 @@
+package com.dylanvann.fastimage;
+
+import android.content.Context;
+
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.model.GlideUrl;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.Cache;
+
+import javax.annotation.Nullable;
+
+/**
+ * Remembers the cache keys of the remote images that were loaded and the URL each was last loaded
+ * from, so disk cache files can be matched back to their URLs.
+ * <p>
+ * Glide names its files after a hash of the cache key, which can't be reversed. The index is a plain
+ * text file with one key per line, followed by a tab and the URL when the key isn't the URL itself,
+ * see {@link FastImageCacheKeys}. It is only appended to while images load, later lines replacing
+ * earlier ones, and rewritten when entries are cleared.
+ * <p>
+ * Glide evicts files without telling anyone, so when the index is loaded the keys whose image is in
+ * neither Glide's disk cache nor the HTTP cache are dropped, along with their version, and the file
+ * is compacted. The index then stays about as large as the caches.
+ */
+final class FastImageCacheIndex {
+    private static final String FILE_NAME = "fast_image_cache_index";
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+
+    @Nullable
+    private static volatile FastImageCacheIndex instance;
+
+    private final Context context;
+    private final File file;
+    // The URL of each key.
+    private final ConcurrentMap<String, String> urls = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> pendingKeys = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean isFlushScheduled = new AtomicBoolean();
+    // Guarded by this.
+    private boolean isLoaded;
+
+    private final Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            isFlushScheduled.set(false);
+            flush();
+        }
+    };
+
+    private FastImageCacheIndex(Context context) {
+        this.context = context.getApplicationContext();
+        this.file = new File(this.context.getCacheDir(), FILE_NAME);
+    }
+
+    static FastImageCacheIndex get(Context context) {
+        if (instance == null) {
+            synchronized (FastImageCacheIndex.class) {
+                if (instance == null) {
+                    instance = new FastImageCacheIndex(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Adds the cache key and URL of the image to the index. Can be called from any thread, the index
+     * is written in the background.
+     */
+    void record(GlideUrl glideUrl) {
+        final String key = glideUrl.getCacheKey();
+        final String url = glideUrl.toStringUrl();
+        if (!url.equals(urls.put(key, url))) {
+            pendingKeys.add(key);
+            if (isFlushScheduled.compareAndSet(false, true)) {
+                FastImageExecutors.io().execute(flush);
+            }
+        }
+    }
+
+    /**
+     * @return the indexed keys by the name of their file in Glide's disk cache. Reads the index from
+     * disk the first time, so it should be called on a background thread.
+     */
+    Map<String, String> getKeysByFileName() {
+        final List<String> snapshot;
+        synchronized (this) {
+            load();
+            snapshot = new ArrayList<>(urls.keySet());
+        }
+        final FastImageCacheVersions versions = FastImageCacheVersions.get(context);
+        final Map<String, String> keysByFileName = new HashMap<>(snapshot.size());
+        for (String key : snapshot) {
+            keysByFileName.put(getFileName(versions.getDataCacheKey(key)), key);
+        }
+        return keysByFileName;
+    }
+
+    /**
+     * @return the URL the image of the key was last loaded from. Keys that aren't indexed are
+     * assumed to be their URL, as they are by default. Reads the index from disk the first time, so
+     * it should be called on a background thread.
+     */
+    String getUrl(String key) {
+        synchronized (this) {
+            load();
+        }
+        final String url = urls.get(key);
+        return url != null ? url : key;
+    }
+
+    /**
+     * @return the URLs of the keys, see {@link #getUrl(String)}.
+     */
+    Set<String> getUrls(Collection<String> keys) {
+        final Set<String> keyUrls = new HashSet<>(keys.size());
+        for (String key : keys) {
+            keyUrls.add(getUrl(key));
+        }
+        return keyUrls;
+    }
+
+    /**
+     * @return the keys of the images whose URL starts with the prefix, to be called on a background
+     * thread.
+     */
+    Set<String> getKeysByUrlPrefix(String prefix) {
+        synchronized (this) {
+            load();
+        }
+        final Set<String> keys = new HashSet<>();
+        for (Map.Entry<String, String> entry : urls.entrySet()) {
+            if (entry.getValue().startsWith(prefix)) {
+                keys.add(entry.getKey());
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Removes the keys from the index, to be called on a background thread.
+     */
+    synchronized void remove(Collection<String> removedKeys) {
+        load();
+        urls.keySet().removeAll(removedKeys);
+        write(urls.keySet(), false);
+    }
+
+    /**
+     * Removes all keys from the index, to be called on a background thread.
+     */
+    synchronized void clear() {
+        isLoaded = true;
+        urls.clear();
+        pendingKeys.clear();
+        file.delete();
+    }
+
+    /**
+     * @return the name Glide's disk cache gives the entry of the key: the SHA-256 of the key and the
+     * index of the value.
+     */
+    static String getFileName(Key key) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            key.updateDiskCacheKey(digest);
+            final byte[] bytes = digest.digest();
+            final char[] chars = new char[bytes.length * 2];
+            for (int i = 0; i < bytes.length; i++) {
+                final int value = bytes[i] & 0xFF;
+                chars[i * 2] = HEX_CHARS[value >>> 4];
+                chars[i * 2 + 1] = HEX_CHARS[value & 0x0F];
+            }
+            return new String(chars) + ".0";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private synchronized void flush() {
+        load();
+        final List<String> newKeys = new ArrayList<>();
+        String key;
+        while ((key = pendingKeys.poll()) != null) {
+            newKeys.add(key);
+        }
+        if (!newKeys.isEmpty()) {
+            write(newKeys, true);
+        }
+    }
+
+    private void load() {
+        if (isLoaded) {
+            return;
+        }
+        isLoaded = true;
+        if (!file.exists()) {
+            return;
+        }
+        final Map<String, String> loadedUrls = new LinkedHashMap<>();
+        int lineCount = 0;
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new FileReader(file));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                lineCount++;
+                final int separator = line.lastIndexOf('\t');
+                if (separator == -1) {
+                    loadedUrls.put(line, line);
+                } else {
+                    loadedUrls.put(line.substring(0, separator), line.substring(separator + 1));
+                }
+            }
+        } catch (IOException ignored) {
+            // The keys that could be read are kept.
+        } finally {
+            closeQuietly(reader);
+        }
+        final boolean isPruned = prune(loadedUrls);
+        for (Map.Entry<String, String> entry : loadedUrls.entrySet()) {
+            // Images recorded before the index was loaded have a more recent URL.
+            urls.putIfAbsent(entry.getKey(), entry.getValue());
+        }
+        if (isPruned || lineCount > loadedUrls.size()) {
+            write(urls.keySet(), false);
+        }
+    }
+
+    /**
+     * Removes the keys whose image is in neither Glide's disk cache nor the HTTP cache, and wasn't
+     * loaded since launch. Nothing is removed while the caches can't be listed.
+     *
+     * @return true if keys were removed.
+     */
+    private boolean prune(Map<String, String> loadedUrls) {
+        final File directory = FastImageDiskCacheCleaner.getDirectory(context);
+        final String[] fileNames = directory != null ? directory.list() : null;
+        final Cache httpCache = FastImageOkHttpProgressGlideModule.getHttpCache();
+        if (fileNames == null || httpCache == null) {
+            return false;
+        }
+        final Set<String> cachedFileNames = new HashSet<>(Arrays.asList(fileNames));
+        final Set<String> cachedUrls = new HashSet<>();
+        try {
+            final Iterator<String> iterator = httpCache.urls();
+            while (iterator.hasNext()) {
+                cachedUrls.add(iterator.next());
+            }
+        } catch (IOException e) {
+            return false;
+        }
+
+        final FastImageCacheVersions versions = FastImageCacheVersions.get(context);
+        final List<String> prunedKeys = new ArrayList<>();
+        final Iterator<Map.Entry<String, String>> iterator = loadedUrls.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, String> entry = iterator.next();
+            if (!urls.containsKey(entry.getKey())
+                    && !cachedUrls.contains(entry.getValue())
+                    && !cachedFileNames.contains(getFileName(versions.getDataCacheKey(entry.getKey())))) {
+                iterator.remove();
+                prunedKeys.add(entry.getKey());
+            }
+        }
+        versions.remove(prunedKeys);
+        FastImageValidators.get(context).remove(prunedKeys);
+        return !prunedKeys.isEmpty();
+    }
+
+    private void write(Collection<String> keysToWrite, boolean append) {
+        BufferedWriter writer = null;
+        try {
+            writer = new BufferedWriter(new FileWriter(file, append));
+            for (String key : keysToWrite) {
+                final String url = urls.get(key);
+                if (url == null) {
+                    // Removed since.
+                    continue;
+                }
+                writer.write(key);
+                if (!url.equals(key)) {
+                    writer.write('\t');
+                    writer.write(url);
+                }
+                writer.newLine();
+            }
+        } catch (IOException ignored) {
+            // The index is best effort, clearing by URL only misses the keys that weren't written.
+        } finally {
+            closeQuietly(writer);
+        }
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
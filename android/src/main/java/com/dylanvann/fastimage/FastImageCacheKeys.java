@@ -0,0 +1,141 @@
+package com.dylanvann.fastimage;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * Rules for the cache keys of remote images, set with {@code FastImage.setCacheKeyRules} in JS.
+ * <p>
+ * By default the cache key is the url. Query parameters that change from one request of an image
+ * to the next, like the expiry and signature of signed CDN urls, can be left out of it, so the image
+ * is cached once. Selected headers can be added to it, for images that depend on them.
+ */
+final class FastImageCacheKeys {
+    private static final Rules DEFAULT_RULES = new Rules(
+            Collections.<String>emptySet(),
+            null,
+            Collections.<String>emptyList()
+    );
+
+    private static volatile Rules rules = DEFAULT_RULES;
+
+    private FastImageCacheKeys() {
+    }
+
+    static final class Rules {
+        final Set<String> removedQueryParams;
+        // Only these are kept when set.
+        @Nullable
+        final Set<String> keptQueryParams;
+        // Lower case.
+        final List<String> headers;
+
+        Rules(Set<String> removedQueryParams, @Nullable Set<String> keptQueryParams, List<String> headers) {
+            this.removedQueryParams = removedQueryParams;
+            this.keptQueryParams = keptQueryParams;
+            this.headers = headers;
+        }
+    }
+
+    static void setRules(@Nullable ReadableMap options) {
+        if (options == null) {
+            rules = DEFAULT_RULES;
+            return;
+        }
+        final Set<String> removedQueryParams = new HashSet<>(getStrings(options, "removeQueryParams"));
+        final Set<String> keptQueryParams = options.hasKey("keepQueryParams") && !options.isNull("keepQueryParams")
+                ? new HashSet<>(getStrings(options, "keepQueryParams"))
+                : null;
+        final List<String> headers = new ArrayList<>();
+        for (String header : getStrings(options, "headers")) {
+            headers.add(header.toLowerCase(Locale.US));
+        }
+        rules = new Rules(removedQueryParams, keptQueryParams, headers);
+    }
+
+    /**
+     * @param cacheKey the cache key given by the source, used as is when set.
+     */
+    static String getCacheKey(String url, Map<String, String> headers, @Nullable String cacheKey) {
+        if (cacheKey != null && !cacheKey.isEmpty()) {
+            return cacheKey;
+        }
+        final Rules rules = FastImageCacheKeys.rules;
+        final StringBuilder key = new StringBuilder(filterQuery(url, rules));
+        for (String name : rules.headers) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                if (name.equals(header.getKey().toLowerCase(Locale.US))) {
+                    key.append('#').append(name).append('=').append(header.getValue());
+                }
+            }
+        }
+        return key.toString();
+    }
+
+    static String filterQuery(String url, Rules rules) {
+        if (rules.keptQueryParams == null && rules.removedQueryParams.isEmpty()) {
+            return url;
+        }
+        final int queryStart = url.indexOf('?');
+        if (queryStart == -1) {
+            return url;
+        }
+        final int fragmentStart = url.indexOf('#', queryStart);
+        final int queryEnd = fragmentStart != -1 ? fragmentStart : url.length();
+
+        // Parameters are kept as they were encoded and in their order, only the names are decoded.
+        final StringBuilder query = new StringBuilder();
+        for (String param : url.substring(queryStart + 1, queryEnd).split("&")) {
+            if (param.isEmpty()) {
+                continue;
+            }
+            final int separator = param.indexOf('=');
+            final String name = decode(separator != -1 ? param.substring(0, separator) : param);
+            final boolean isKept = rules.keptQueryParams != null
+                    ? rules.keptQueryParams.contains(name)
+                    : !rules.removedQueryParams.contains(name);
+            if (isKept) {
+                query.append(query.length() == 0 ? '?' : '&').append(param);
+            }
+        }
+        return url.substring(0, queryStart) + query + url.substring(queryEnd);
+    }
+
+    /**
+     * Decodes the percent escapes of a query parameter name, a '+' is kept as is. Names that aren't
+     * validly encoded are used as they are.
+     */
+    private static String decode(String name) {
+        try {
+            return URLDecoder.decode(name.replace("+", "%2B"), "UTF-8");
+        } catch (IllegalArgumentException e) {
+            return name;
+        } catch (UnsupportedEncodingException e) {
+            return name;
+        }
+    }
+
+    private static List<String> getStrings(ReadableMap options, String key) {
+        final List<String> strings = new ArrayList<>();
+        if (!options.hasKey(key) || options.isNull(key)) {
+            return strings;
+        }
+        final ReadableArray array = options.getArray(key);
+        for (int i = 0; i < array.size(); i++) {
+            strings.add(array.getString(i));
+        }
+        return strings;
+    }
+}
@@ -0,0 +1,193 @@
+package com.dylanvann.fastimage;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.engine.cache.DiskCache;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.signature.EmptySignature;
+import com.bumptech.glide.signature.ObjectKey;
+
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.annotation.Nullable;
+
+/**
+ * Versions of remote images that were invalidated.
+ * <p>
+ * Glide's memory cache keys include the size and options of each load and can't be looked up by
+ * URL, so images aren't removed from it. Instead an invalidated URL gets a new version that is
+ * loaded with a new signature, which changes both its memory and disk cache keys. The old entries
+ * are never hit again and are evicted like any other. Versions are persisted so the disk cache
+ * entries written since stay valid across launches. Images that were never invalidated have no
+ * signature, so their existing cache entries keep working. The version of an image is dropped once
+ * the image has left the caches, see {@link FastImageCacheIndex}.
+ */
+final class FastImageCacheVersions {
+    interface Listener {
+        /**
+         * Called on the thread that invalidated the keys.
+         */
+        void onInvalidated(Collection<String> cacheKeys);
+    }
+
+    private static final String PREFERENCES_NAME = "FastImageCacheVersions";
+    private static final String SIGNATURE_PREFIX = "fast-image-version-";
+
+    @Nullable
+    private static volatile FastImageCacheVersions instance;
+
+    private final Context context;
+    private final SharedPreferences preferences;
+    private final Map<String, Integer> versions = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<WeakReference<Listener>> listeners = new CopyOnWriteArrayList<>();
+
+    private FastImageCacheVersions(Context context) {
+        this.context = context.getApplicationContext();
+        preferences = this.context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        for (Map.Entry<String, ?> entry : preferences.getAll().entrySet()) {
+            if (entry.getValue() instanceof Integer) {
+                versions.put(entry.getKey(), (Integer) entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Reads the versions in the background, so the first image load doesn't read them on the UI
+     * thread.
+     */
+    static void preload(final Context context) {
+        FastImageExecutors.io().execute(new Runnable() {
+            @Override
+            public void run() {
+                get(context);
+            }
+        });
+    }
+
+    /**
+     * Reads the versions the first time, which is done ahead of time by {@link #preload(Context)}.
+     */
+    static FastImageCacheVersions get(Context context) {
+        if (instance == null) {
+            synchronized (FastImageCacheVersions.class) {
+                if (instance == null) {
+                    instance = new FastImageCacheVersions(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @return the version of the image, 0 if it was never invalidated.
+     */
+    int getVersion(String cacheKey) {
+        final Integer version = versions.get(cacheKey);
+        return version != null ? version : 0;
+    }
+
+    /**
+     * @return the signature to load the image with, or null if it was never invalidated.
+     */
+    @Nullable
+    Key getSignature(String cacheKey) {
+        final Integer version = versions.get(cacheKey);
+        return version != null ? getSignature(version) : null;
+    }
+
+    private static Key getSignature(int version) {
+        return new ObjectKey(SIGNATURE_PREFIX + version);
+    }
+
+    private static Key getDataCacheKey(String cacheKey, int version) {
+        // Version 0 was never invalidated and has no signature.
+        return new FastImageDataCacheKey(new GlideUrl(cacheKey), version > 0 ? getSignature(version) : EmptySignature.obtain());
+    }
+
+    /**
+     * @return the key Glide's disk cache stores the original data of the image under.
+     */
+    Key getDataCacheKey(String cacheKey) {
+        final Integer version = versions.get(cacheKey);
+        return getDataCacheKey(cacheKey, version != null ? version : 0);
+    }
+
+    /**
+     * @return the key the original data of the image will be stored under once it is invalidated.
+     */
+    Key getNextDataCacheKey(String cacheKey) {
+        final Integer version = versions.get(cacheKey);
+        return getDataCacheKey(cacheKey, version != null ? version + 1 : 1);
+    }
+
+    /**
+     * Gives the images a new version, so they are loaded again instead of from the caches, and
+     * removes the original data of the old version from the disk cache. Does disk IO, so it should
+     * be called on a background thread.
+     */
+    void invalidate(Collection<String> cacheKeys) {
+        // The disk cache entries of the old versions won't be hit again, free their space.
+        final DiskCache diskCache = FastImageDiskCacheFactory.getDiskCache();
+        if (diskCache != null) {
+            for (String cacheKey : cacheKeys) {
+                diskCache.delete(getDataCacheKey(cacheKey));
+            }
+        }
+
+        // Images with the 'web' cache control are cached by OkHttp instead, under their URL.
+        FastImageOkHttpProgressGlideModule.removeFromHttpCache(FastImageCacheIndex.get(context).getUrls(cacheKeys));
+
+        final SharedPreferences.Editor editor = preferences.edit();
+        synchronized (this) {
+            for (String cacheKey : cacheKeys) {
+                final Integer version = versions.get(cacheKey);
+                final int newVersion = version != null ? version + 1 : 1;
+                versions.put(cacheKey, newVersion);
+                editor.putInt(cacheKey, newVersion);
+            }
+        }
+        editor.apply();
+        for (WeakReference<Listener> reference : listeners) {
+            final Listener listener = reference.get();
+            if (listener == null) {
+                listeners.remove(reference);
+            } else {
+                listener.onInvalidated(cacheKeys);
+            }
+        }
+    }
+
+    /**
+     * Forgets the versions of images that left the caches, they are loaded without a signature
+     * again. Only for images that weren't loaded since launch, otherwise the memory cache could
+     * still hold their image from before they were invalidated.
+     */
+    void remove(Collection<String> cacheKeys) {
+        final SharedPreferences.Editor editor = preferences.edit();
+        boolean isRemoved = false;
+        synchronized (this) {
+            for (String cacheKey : cacheKeys) {
+                if (versions.remove(cacheKey) != null) {
+                    editor.remove(cacheKey);
+                    isRemoved = true;
+                }
+            }
+        }
+        if (isRemoved) {
+            editor.apply();
+        }
+    }
+
+    /**
+     * Listeners are held weakly, so a view manager doesn't outlive its React instance.
+     */
+    void addListener(Listener listener) {
+        listeners.add(new WeakReference<>(listener));
+    }
+}
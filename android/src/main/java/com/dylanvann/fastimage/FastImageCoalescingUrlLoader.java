@@ -0,0 +1,275 @@
+package com.dylanvann.fastimage;
+
+import android.content.Context;
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.engine.cache.DiskCache;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Downloads each remote image once, however many requests ask for it at the same time.
+ * <p>
+ * Glide only merges requests with the same size and options, so views showing the same url at
+ * different sizes and preloads of it each start their own download. Here the first fetch of a url
+ * downloads it and the others wait for it. Once it is in the disk cache they read it from there;
+ * if it failed, or was cancelled, the next one in line downloads it instead. Progress is
+ * dispatched by url, so views waiting for the download still get its progress.
+ * <p>
+ * Images with the 'web' cache control, and loads that skip the caches, aren't stored in Glide's
+ * disk cache and are fetched as usual.
+ */
+final class FastImageCoalescingUrlLoader implements ModelLoader<GlideUrl, InputStream> {
+    // Guarded by the class.
+    private static final Map<String, Download> downloads = new HashMap<>();
+
+    private final Context context;
+    private final ModelLoader<GlideUrl, InputStream> delegate;
+
+    FastImageCoalescingUrlLoader(Context context, ModelLoader<GlideUrl, InputStream> delegate) {
+        this.context = context.getApplicationContext();
+        this.delegate = delegate;
+    }
+
+    @Nullable
+    @Override
+    public LoadData<InputStream> buildLoadData(@NonNull GlideUrl model, int width, int height, @NonNull Options options) {
+        final LoadData<InputStream> loadData = delegate.buildLoadData(model, width, height, options);
+        if (loadData == null || !isCoalesced(model)) {
+            return loadData;
+        }
+        return new LoadData<>(loadData.sourceKey, loadData.alternateKeys, new Fetcher(context, model, loadData.fetcher));
+    }
+
+    @Override
+    public boolean handles(@NonNull GlideUrl model) {
+        return delegate.handles(model);
+    }
+
+    private static boolean isCoalesced(GlideUrl model) {
+        final Map<String, String> headers = model.getHeaders();
+        return !headers.containsKey(FastImageOkHttpProgressGlideModule.HTTP_CACHE_HEADER)
+                && !headers.containsKey("Cache-Control");
+    }
+
+    static final class Factory implements ModelLoaderFactory<GlideUrl, InputStream> {
+        private final Context context;
+        private final ModelLoaderFactory<GlideUrl, InputStream> delegate;
+
+        Factory(Context context, ModelLoaderFactory<GlideUrl, InputStream> delegate) {
+            this.context = context;
+            this.delegate = delegate;
+        }
+
+        @NonNull
+        @Override
+        public ModelLoader<GlideUrl, InputStream> build(@NonNull MultiModelLoaderFactory multiFactory) {
+            return new FastImageCoalescingUrlLoader(context, delegate.build(multiFactory));
+        }
+
+        @Override
+        public void teardown() {
+            delegate.teardown();
+        }
+    }
+
+    private static final class Download {
+        Fetcher leader;
+        final List<Fetcher> followers = new ArrayList<>();
+
+        Download(Fetcher leader) {
+            this.leader = leader;
+        }
+    }
+
+    /**
+     * @return true if the fetcher downloads the image, false if it waits for another fetcher.
+     */
+    private static synchronized boolean join(Fetcher fetcher) {
+        final Download download = downloads.get(fetcher.key);
+        if (download == null) {
+            downloads.put(fetcher.key, new Download(fetcher));
+            return true;
+        }
+        download.followers.add(fetcher);
+        return false;
+    }
+
+    /**
+     * @return true if the fetcher was waiting and stopped waiting.
+     */
+    private static synchronized boolean leave(Fetcher fetcher) {
+        final Download download = downloads.get(fetcher.key);
+        return download != null && download.followers.remove(fetcher);
+    }
+
+    /**
+     * Ends the download of the fetcher, if it leads one. Does nothing otherwise, so fetchers can
+     * call it whether they led a download or not.
+     */
+    private static void finish(Fetcher fetcher, boolean isCached) {
+        final List<Fetcher> resumed;
+        synchronized (FastImageCoalescingUrlLoader.class) {
+            final Download download = downloads.get(fetcher.key);
+            if (download == null || download.leader != fetcher) {
+                return;
+            }
+            if (isCached || download.followers.isEmpty()) {
+                downloads.remove(fetcher.key);
+                resumed = download.followers;
+            } else {
+                // The next in line downloads it.
+                download.leader = download.followers.remove(0);
+                resumed = new ArrayList<>();
+                resumed.add(download.leader);
+                isCached = false;
+            }
+        }
+        for (Fetcher follower : resumed) {
+            follower.resume(isCached);
+        }
+    }
+
+    private static final class Fetcher implements DataFetcher<InputStream> {
+        private final Context context;
+        private final GlideUrl model;
+        private final DataFetcher<InputStream> delegate;
+        final String key;
+
+        @Nullable
+        private volatile Priority priority;
+        @Nullable
+        private volatile DataCallback<? super InputStream> callback;
+        private volatile boolean isDataReady;
+        @Nullable
+        private volatile InputStream cachedStream;
+
+        Fetcher(Context context, GlideUrl model, DataFetcher<InputStream> delegate) {
+            this.context = context;
+            this.model = model;
+            this.delegate = delegate;
+            this.key = model.getCacheKey();
+        }
+
+        @Override
+        public void loadData(@NonNull Priority priority, @NonNull DataCallback<? super InputStream> callback) {
+            this.priority = priority;
+            this.callback = callback;
+            if (join(this)) {
+                download();
+            }
+        }
+
+        void resume(boolean isCached) {
+            final DataCallback<? super InputStream> callback = this.callback;
+            if (callback == null) {
+                return;
+            }
+            if (isCached) {
+                final InputStream stream = openCached();
+                if (stream != null) {
+                    cachedStream = stream;
+                    callback.onDataReady(stream);
+                    return;
+                }
+            }
+            // Not cached after all, e.g. it was evicted already.
+            download();
+        }
+
+        private void download() {
+            final Priority priority = this.priority;
+            final DataCallback<? super InputStream> callback = this.callback;
+            if (priority == null || callback == null) {
+                return;
+            }
+            delegate.loadData(priority, new DataCallback<InputStream>() {
+                @Override
+                public void onDataReady(@Nullable InputStream data) {
+                    // The download is done once Glide wrote it to the disk cache, see cleanup().
+                    isDataReady = data != null;
+                    if (data == null) {
+                        finish(Fetcher.this, false);
+                    }
+                    callback.onDataReady(data);
+                }
+
+                @Override
+                public void onLoadFailed(@NonNull Exception e) {
+                    finish(Fetcher.this, false);
+                    callback.onLoadFailed(e);
+                }
+            });
+        }
+
+        @Nullable
+        private InputStream openCached() {
+            final DiskCache diskCache = FastImageDiskCacheFactory.getDiskCache();
+            if (diskCache == null) {
+                return null;
+            }
+            final File file = diskCache.get(FastImageCacheVersions.get(context).getDataCacheKey(key));
+            if (file == null) {
+                return null;
+            }
+            try {
+                return new FileInputStream(file);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public void cleanup() {
+            delegate.cleanup();
+            final InputStream stream = cachedStream;
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException ignored) {
+                }
+            }
+            finish(this, isDataReady);
+            callback = null;
+        }
+
+        @Override
+        public void cancel() {
+            if (leave(this)) {
+                return;
+            }
+            delegate.cancel();
+            finish(this, false);
+        }
+
+        @NonNull
+        @Override
+        public Class<InputStream> getDataClass() {
+            return InputStream.class;
+        }
+
+        @NonNull
+        @Override
+        public DataSource getDataSource() {
+            // Read from the disk cache after waiting for another download, so it isn't written again.
+            return cachedStream != null ? DataSource.DATA_DISK_CACHE : delegate.getDataSource();
+        }
+    }
+}
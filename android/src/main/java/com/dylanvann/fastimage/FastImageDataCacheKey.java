@@ -0,0 +1,41 @@
+package com.dylanvann.fastimage;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.load.Key;
+
+import java.security.MessageDigest;
+
+/**
+ * Same key as the one Glide stores the original data of a source under in its disk cache, which is
+ * not public. Lets the module find and remove entries of the disk cache.
+ */
+final class FastImageDataCacheKey implements Key {
+    private final Key sourceKey;
+    private final Key signature;
+
+    FastImageDataCacheKey(Key sourceKey, Key signature) {
+        this.sourceKey = sourceKey;
+        this.signature = signature;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof FastImageDataCacheKey) {
+            final FastImageDataCacheKey other = (FastImageDataCacheKey) o;
+            return sourceKey.equals(other.sourceKey) && signature.equals(other.signature);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * sourceKey.hashCode() + signature.hashCode();
+    }
+
+    @Override
+    public void updateDiskCacheKey(@NonNull MessageDigest messageDigest) {
+        sourceKey.updateDiskCacheKey(messageDigest);
+        signature.updateDiskCacheKey(messageDigest);
+    }
+}
@@ -0,0 +1,194 @@
+package com.dylanvann.fastimage;
+
+import android.content.Context;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.cache.DiskCache;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.Cache;
+
+import javax.annotation.Nullable;
+
+/**
+ * Clears Glide's disk cache, entirely or selectively, and counts what was removed. All methods do
+ * file IO and must be called on a background thread.
+ */
+final class FastImageDiskCacheCleaner {
+    private final Context context;
+
+    FastImageDiskCacheCleaner(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    Result clearAll() {
+        final Result result = new Result();
+        for (Entry entry : getEntries(Collections.<String, String>emptyMap())) {
+            result.add(entry.size);
+        }
+        Glide.get(context).clearDiskCache();
+        FastImageCacheIndex.get(context).clear();
+        FastImageValidators.get(context).clear();
+
+        // Images with the 'web' cache control.
+        final Cache httpCache = FastImageOkHttpProgressGlideModule.getHttpCache();
+        if (httpCache != null) {
+            try {
+                final long size = httpCache.size();
+                final int count = countUrls(httpCache);
+                httpCache.evictAll();
+                result.files += count;
+                result.bytes += size;
+            } catch (IOException ignored) {
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes the entries that match all of the given filters. If {@code maxSize} is set only the
+     * oldest matching entries are removed until the cache is no larger than it.
+     * <p>
+     * Entries are removed through the disk cache, so its journal and size stay correct. Files that
+     * aren't in the index can't be, they are left alone, and so is a cache that isn't the one of
+     * FastImageGlideModule.
+     *
+     * @param urlPrefix only remove images whose URL starts with this, ignored if null.
+     * @param olderThan only remove images written more than this many milliseconds ago, ignored if
+     *                  negative.
+     * @param maxSize   size in bytes to shrink the cache to, ignored if negative.
+     */
+    Result clear(@Nullable String urlPrefix, long olderThan, long maxSize) {
+        if (FastImageDiskCacheFactory.open() == null) {
+            // Initializes Glide, which creates the factory of the cache.
+            Glide.get(context);
+        }
+        final DiskCache diskCache = FastImageDiskCacheFactory.open();
+        if (diskCache == null) {
+            return new Result();
+        }
+        final FastImageCacheIndex index = FastImageCacheIndex.get(context);
+        final List<Entry> entries = getEntries(index.getKeysByFileName());
+
+        long cacheSize = 0;
+        for (Entry entry : entries) {
+            cacheSize += entry.size;
+        }
+        // Files are never touched on reads, so the modification time is when the image was written.
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                return a.lastModified < b.lastModified ? -1 : (a.lastModified == b.lastModified ? 0 : 1);
+            }
+        });
+
+        final long now = System.currentTimeMillis();
+        final FastImageCacheVersions versions = FastImageCacheVersions.get(context);
+        final Result result = new Result();
+        final List<String> removedKeys = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (maxSize >= 0 && cacheSize <= maxSize) {
+                break;
+            }
+            if (entry.key == null) {
+                // Can only be removed through the cache with its key.
+                continue;
+            }
+            if (urlPrefix != null && !index.getUrl(entry.key).startsWith(urlPrefix)) {
+                continue;
+            }
+            if (olderThan >= 0 && now - entry.lastModified < olderThan) {
+                continue;
+            }
+            // Removes the entry from the journal too, so the cache's size stays correct.
+            diskCache.delete(versions.getDataCacheKey(entry.key));
+            removedKeys.add(entry.key);
+            cacheSize -= entry.size;
+            result.add(entry.size);
+        }
+        if (!removedKeys.isEmpty()) {
+            index.remove(removedKeys);
+            FastImageValidators.get(context).remove(removedKeys);
+        }
+        return result;
+    }
+
+    private static int countUrls(Cache cache) throws IOException {
+        int count = 0;
+        final Iterator<String> urls = cache.urls();
+        while (urls.hasNext()) {
+            urls.next();
+            count++;
+        }
+        return count;
+    }
+
+    private List<Entry> getEntries(Map<String, String> keysByFileName) {
+        final File directory = getDirectory(context);
+        final File[] files = directory != null ? directory.listFiles() : null;
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        final List<Entry> entries = new ArrayList<>(files.length);
+        for (File file : files) {
+            // Skips the journal and files that are still being written.
+            if (!file.getName().endsWith(".0")) {
+                continue;
+            }
+            entries.add(new Entry(file, keysByFileName.get(file.getName())));
+        }
+        return entries;
+    }
+
+    /**
+     * @return the directory of Glide's disk cache.
+     */
+    @Nullable
+    static File getDirectory(Context context) {
+        final File directory = FastImageDiskCacheFactory.getDirectory();
+        // Glide's default directory when the app excludes FastImageGlideModule.
+        return directory != null ? directory : Glide.getPhotoCacheDir(context);
+    }
+
+    private static final class Entry {
+        final File file;
+        @Nullable
+        final String key;
+        final long size;
+        final long lastModified;
+
+        Entry(File file, @Nullable String key) {
+            this.file = file;
+            this.key = key;
+            this.size = file.length();
+            this.lastModified = file.lastModified();
+        }
+    }
+
+    static final class Result {
+        int files;
+        long bytes;
+
+        void add(long size) {
+            files++;
+            bytes += size;
+        }
+
+        WritableMap toMap() {
+            final WritableMap map = Arguments.createMap();
+            map.putInt("files", files);
+            map.putDouble("bytes", bytes);
+            return map;
+        }
+    }
+}
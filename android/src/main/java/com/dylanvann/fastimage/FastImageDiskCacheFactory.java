@@ -0,0 +1,85 @@
+package com.dylanvann.fastimage;
+
+import com.bumptech.glide.load.engine.cache.DiskCache;
+import com.bumptech.glide.load.engine.cache.DiskLruCacheWrapper;
+
+import java.io.File;
+
+import javax.annotation.Nullable;
+
+/**
+ * Creates Glide's disk cache in a configurable directory, and keeps track of the directory and the
+ * cache so the module can inspect and maintain them.
+ */
+final class FastImageDiskCacheFactory implements DiskCache.Factory {
+    @Nullable
+    private static volatile FastImageDiskCacheFactory factory;
+    @Nullable
+    private static volatile File directory;
+    @Nullable
+    private static volatile DiskCache diskCache;
+    private static volatile long maxSize;
+
+    private final File cacheDirectory;
+    private final long size;
+    // Guarded by this.
+    @Nullable
+    private DiskCache cache;
+
+    FastImageDiskCacheFactory(File cacheDirectory, long size) {
+        this.cacheDirectory = cacheDirectory;
+        this.size = size;
+        directory = cacheDirectory;
+        maxSize = size;
+        factory = this;
+    }
+
+    /**
+     * Glide builds the cache the first time it needs it, the module may build it before, see
+     * {@link #open()}. Either way there is only one, two caches on one directory would each keep a
+     * journal of their own.
+     */
+    @Nullable
+    @Override
+    public synchronized DiskCache build() {
+        if (cache != null) {
+            return cache;
+        }
+        if (!cacheDirectory.mkdirs() && (!cacheDirectory.exists() || !cacheDirectory.isDirectory())) {
+            return null;
+        }
+        cache = DiskLruCacheWrapper.create(cacheDirectory, size);
+        diskCache = cache;
+        return cache;
+    }
+
+    /**
+     * @return Glide's disk cache, built if Glide didn't use it yet, or null if Glide isn't
+     * initialized or the app excludes FastImageGlideModule.
+     */
+    @Nullable
+    static DiskCache open() {
+        final FastImageDiskCacheFactory current = factory;
+        return current != null ? current.build() : null;
+    }
+
+    /**
+     * @return the directory of the disk cache, or null if the app excludes FastImageGlideModule.
+     */
+    @Nullable
+    static File getDirectory() {
+        return directory;
+    }
+
+    static long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return Glide's disk cache, or null until Glide first uses it.
+     */
+    @Nullable
+    static DiskCache getDiskCache() {
+        return diskCache;
+    }
+}
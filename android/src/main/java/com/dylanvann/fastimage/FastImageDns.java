@@ -0,0 +1,62 @@
+package com.dylanvann.fastimage;
+
+import android.os.SystemClock;
+import androidx.annotation.NonNull;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.Dns;
+
+/**
+ * Caches DNS lookups of image hosts in process, so a screen of images from a CDN resolves it once
+ * instead of asking the system resolver for every new connection.
+ * <p>
+ * When a lookup fails the last addresses of the host are used even if they expired, a flaky network
+ * is more likely to have lost the resolver than the host to have moved.
+ */
+final class FastImageDns implements Dns {
+    static final long DEFAULT_TIME_TO_LIVE = 2 * 60 * 1000;
+
+    private final Dns delegate;
+    private final long timeToLive;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    FastImageDns(Dns delegate, long timeToLive) {
+        this.delegate = delegate;
+        this.timeToLive = timeToLive;
+    }
+
+    @NonNull
+    @Override
+    public List<InetAddress> lookup(@NonNull String hostname) throws UnknownHostException {
+        final long now = SystemClock.uptimeMillis();
+        final Entry entry = entries.get(hostname);
+        if (entry != null && now < entry.expiresAt) {
+            return entry.addresses;
+        }
+        try {
+            final List<InetAddress> addresses = delegate.lookup(hostname);
+            entries.put(hostname, new Entry(addresses, now + timeToLive));
+            return addresses;
+        } catch (UnknownHostException e) {
+            if (entry != null) {
+                return entry.addresses;
+            }
+            throw e;
+        }
+    }
+
+    private static final class Entry {
+        final List<InetAddress> addresses;
+        final long expiresAt;
+
+        Entry(List<InetAddress> addresses, long expiresAt) {
+            this.addresses = addresses;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.dylanvann.fastimage;
+
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.uimanager.events.Event;
+
+import javax.annotation.Nullable;
+
+/**
+ * An image event sent through React Native's event dispatcher, which buffers events and sends
+ * everything that was dispatched during a frame to JS in one batch. Progress events of the same
+ * view are coalesced so only the latest one of a frame is sent.
+ * <p>
+ * The dispatcher sends the map of {@link #getEventData()} to the view's surface, rather than the
+ * event sending itself through the deprecated {@code dispatch(RCTEventEmitter)}.
+ */
+class FastImageEvent extends Event<FastImageEvent> {
+    private final String eventName;
+    private final WritableMap eventData;
+
+    FastImageEvent(int surfaceId, int viewId, String eventName, WritableMap eventData) {
+        super(surfaceId, viewId);
+        this.eventName = eventName;
+        this.eventData = eventData;
+    }
+
+    @Override
+    public String getEventName() {
+        return eventName;
+    }
+
+    @Override
+    public boolean canCoalesce() {
+        return FastImageViewManager.REACT_ON_PROGRESS_EVENT.equals(eventName);
+    }
+
+    @Nullable
+    @Override
+    protected WritableMap getEventData() {
+        return eventData;
+    }
+}
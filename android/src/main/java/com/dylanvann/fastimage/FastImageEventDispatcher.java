@@ -0,0 +1,31 @@
+package com.dylanvann.fastimage;
+
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.uimanager.ThemedReactContext;
+import com.facebook.react.uimanager.UIManagerHelper;
+import com.facebook.react.uimanager.UIManagerModule;
+import com.facebook.react.uimanager.events.RCTEventEmitter;
+
+final class FastImageEventDispatcher {
+    private FastImageEventDispatcher() {
+    }
+
+    /**
+     * Sends an event to the JS component of the view, either right away or batched with the other
+     * events of the frame depending on the eventMode of the view.
+     */
+    static void dispatch(FastImageViewWithUrl view, String eventName, WritableMap eventData) {
+        ThemedReactContext context = (ThemedReactContext) view.getContext();
+        int viewId = view.getId();
+        if (view.eventMode == FastImageEventMode.BATCHED) {
+            UIManagerModule uiManager = context.getNativeModule(UIManagerModule.class);
+            if (uiManager != null) {
+                uiManager.getEventDispatcher().dispatchEvent(new FastImageEvent(
+                        UIManagerHelper.getSurfaceId(view), viewId, eventName, eventData));
+                return;
+            }
+        }
+        RCTEventEmitter eventEmitter = context.getJSModule(RCTEventEmitter.class);
+        eventEmitter.receiveEvent(viewId, eventName, eventData);
+    }
+}
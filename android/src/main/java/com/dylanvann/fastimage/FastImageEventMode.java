@@ -0,0 +1,6 @@
+package com.dylanvann.fastimage;
+
+public enum FastImageEventMode {
+    DIRECT,
+    BATCHED
+}
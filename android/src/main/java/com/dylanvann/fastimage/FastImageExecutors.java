@@ -0,0 +1,63 @@
+package com.dylanvann.fastimage;
+
+import android.os.Process;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background threads for the work the module does outside of Glide, such as file and cache IO.
+ */
+final class FastImageExecutors {
+    private static final int IO_THREAD_COUNT = 2;
+
+    private static volatile ExecutorService io;
+
+    private FastImageExecutors() {
+    }
+
+    static ExecutorService io() {
+        if (io == null) {
+            synchronized (FastImageExecutors.class) {
+                if (io == null) {
+                    final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                            IO_THREAD_COUNT,
+                            IO_THREAD_COUNT,
+                            30,
+                            TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(),
+                            newThreadFactory("fast-image-io")
+                    );
+                    executor.allowCoreThreadTimeOut(true);
+                    io = executor;
+                }
+            }
+        }
+        return io;
+    }
+
+    /**
+     * @return a factory for threads that run with background priority, so they don't compete with
+     * the UI thread.
+     */
+    static ThreadFactory newThreadFactory(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, name + "-" + count.incrementAndGet());
+            }
+        };
+    }
+}
@@ -1,9 +1,121 @@
 package com.dylanvann.fastimage;
 
+import android.content.Context;
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.GlideBuilder;
 import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPoolAdapter;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+import com.bumptech.glide.load.engine.cache.DiskCache;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.load.engine.cache.MemoryCache;
+import com.bumptech.glide.load.engine.cache.MemorySizeCalculator;
+import com.bumptech.glide.load.engine.executor.GlideExecutor;
 import com.bumptech.glide.module.AppGlideModule;
 
+import java.lang.reflect.Field;
+
+import javax.annotation.Nullable;
+
+import static com.dylanvann.fastimage.FastImageCacheConfig.BITMAP_POOL_SIZE;
+import static com.dylanvann.fastimage.FastImageCacheConfig.DISK_CACHE_SIZE;
+import static com.dylanvann.fastimage.FastImageCacheConfig.DISK_CACHE_THREAD_COUNT;
+import static com.dylanvann.fastimage.FastImageCacheConfig.MEMORY_CACHE_SIZE;
+import static com.dylanvann.fastimage.FastImageCacheConfig.SMALL_IMAGE_CACHE_SIZE;
+import static com.dylanvann.fastimage.FastImageCacheConfig.SMALL_IMAGE_MAX_SIZE;
+import static com.dylanvann.fastimage.FastImageCacheConfig.SOURCE_THREAD_COUNT;
+import static com.dylanvann.fastimage.FastImageCacheConfig.WEB_MEMORY_CACHE_TIME_TO_LIVE;
+
 // We need an AppGlideModule to be present for progress events to work.
 @GlideModule
 public final class FastImageGlideModule extends AppGlideModule {
+    private static final long DEFAULT_SMALL_IMAGE_MAX_SIZE = 64 * 1024;
+
+    private static volatile boolean isApplied;
+    @Nullable
+    private static volatile MemoryCache memoryCache;
+
+    @Override
+    public void applyOptions(@NonNull Context context, @NonNull GlideBuilder builder) {
+        final FastImageCacheConfig config = FastImageCacheConfig.load(context);
+        // Glide's defaults, which already account for the screen size and low RAM devices.
+        final MemorySizeCalculator calculator = new MemorySizeCalculator.Builder(context).build();
+
+        final long bitmapPoolSize = config.getLong(BITMAP_POOL_SIZE, calculator.getBitmapPoolSize());
+        builder.setBitmapPool(bitmapPoolSize > 0 ? new LruBitmapPool(bitmapPoolSize) : new BitmapPoolAdapter());
+
+        final long memoryCacheSize = config.getLong(MEMORY_CACHE_SIZE, calculator.getMemoryCacheSize());
+        final long smallImageCacheSize = config.getLong(SMALL_IMAGE_CACHE_SIZE, 0);
+        final MemoryCache cache;
+        if (smallImageCacheSize > 0) {
+            cache = new FastImageMemoryCache(
+                    memoryCacheSize,
+                    smallImageCacheSize,
+                    config.getLong(SMALL_IMAGE_MAX_SIZE, DEFAULT_SMALL_IMAGE_MAX_SIZE)
+            );
+        } else {
+            cache = new LruResourceCache(memoryCacheSize);
+        }
+        builder.setMemoryCache(cache);
+        memoryCache = cache;
+
+        builder.setDiskCache(new FastImageDiskCacheFactory(
+                config.getDiskCacheDirectory(context),
+                config.getLong(DISK_CACHE_SIZE, DiskCache.Factory.DEFAULT_DISK_CACHE_SIZE)
+        ));
+
+        final int sourceThreadCount = config.getInt(SOURCE_THREAD_COUNT, 0);
+        if (sourceThreadCount > 0) {
+            builder.setSourceExecutor(GlideExecutor.newSourceBuilder().setThreadCount(sourceThreadCount).build());
+        }
+        // Images found in the disk cache are decoded on the disk cache threads.
+        final int diskCacheThreadCount = config.getInt(DISK_CACHE_THREAD_COUNT, 0);
+        if (diskCacheThreadCount > 0) {
+            builder.setDiskCacheExecutor(GlideExecutor.newDiskCacheBuilder().setThreadCount(diskCacheThreadCount).build());
+        }
+
+        FastImageWebSignatures.setTimeToLive(
+                config.getLong(WEB_MEMORY_CACHE_TIME_TO_LIVE, FastImageWebSignatures.DEFAULT_TIME_TO_LIVE)
+        );
+
+        isApplied = true;
+    }
+
+    /**
+     * @return whether Glide is set up by this module, rather than by the app's own AppGlideModule
+     * when it sets excludeAppGlideModule.
+     */
+    static boolean isInstalled() {
+        try {
+            // Glide generates this class in the app, it holds the app's AppGlideModule. Its fields
+            // may be renamed by R8, the modules themselves are kept.
+            final Class<?> generated = Class.forName("com.bumptech.glide.GeneratedAppGlideModuleImpl");
+            for (Field field : generated.getDeclaredFields()) {
+                if (field.getType() == FastImageGlideModule.class) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return whether Glide has been initialized, after which configuration changes only apply on
+     * the next launch.
+     */
+    static boolean isApplied() {
+        return isApplied;
+    }
+
+    /**
+     * @return Glide's memory cache, or null if Glide isn't initialized or the app excludes this
+     * module.
+     */
+    @Nullable
+    static MemoryCache getMemoryCache() {
+        return memoryCache;
+    }
 }
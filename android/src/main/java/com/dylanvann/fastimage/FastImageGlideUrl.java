@@ -0,0 +1,75 @@
+package com.dylanvann.fastimage;
+
+import android.net.Uri;
+
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.load.model.Headers;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * A remote image whose cache key may differ from its url, see {@link FastImageCacheKeys}.
+ * <p>
+ * Glide keys both its disk and memory caches by the cache key. Two urls with the same cache key are
+ * the same image, whatever headers they are requested with, except for the headers that change how
+ * the image is cached.
+ */
+final class FastImageGlideUrl extends GlideUrl {
+    /**
+     * Carries the cache key of a request to the network interceptors, which remove it before the
+     * request is sent, see {@link FastImageOkHttpProgressGlideModule}.
+     */
+    static final String CACHE_KEY_HEADER = "X-FastImage-Cache-Key";
+
+    private final String cacheKey;
+    // The headers that change how the image is cached.
+    private final Map<String, String> cacheHeaders = new HashMap<>();
+
+    FastImageGlideUrl(String url, Headers headers, String cacheKey) {
+        super(url, headers);
+        this.cacheKey = cacheKey;
+        for (Map.Entry<String, String> header : super.getHeaders().entrySet()) {
+            if (FastImageOkHttpProgressGlideModule.HTTP_CACHE_HEADER.equals(header.getKey())
+                    || "Cache-Control".equalsIgnoreCase(header.getKey())) {
+                cacheHeaders.put(header.getKey(), header.getValue());
+            }
+        }
+    }
+
+    /**
+     * @return the cache key of the url, which is the url itself if it was loaded some other way.
+     */
+    static String getCacheKey(String url, @Nullable String cacheKeyHeader) {
+        return cacheKeyHeader != null ? Uri.decode(cacheKeyHeader) : url;
+    }
+
+    @Override
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() {
+        final Map<String, String> withCacheKey = new HashMap<>(super.getHeaders());
+        // Header values have to be ASCII.
+        withCacheKey.put(CACHE_KEY_HEADER, Uri.encode(cacheKey));
+        return withCacheKey;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof FastImageGlideUrl) {
+            final FastImageGlideUrl other = (FastImageGlideUrl) o;
+            return cacheKey.equals(other.cacheKey) && cacheHeaders.equals(other.cacheHeaders);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * cacheKey.hashCode() + cacheHeaders.hashCode();
+    }
+}
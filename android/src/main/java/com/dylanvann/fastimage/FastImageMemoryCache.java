@@ -0,0 +1,97 @@
+package com.dylanvann.fastimage;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.load.engine.cache.MemoryCache;
+
+import javax.annotation.Nullable;
+
+/**
+ * Memory cache with a separate tier for small images.
+ * <p>
+ * Icons and avatars are cheap to keep in memory but are quickly evicted by a few large photos when
+ * they share one LRU. Images up to {@code maxSmallImageSize} bytes get their own budget instead.
+ */
+final class FastImageMemoryCache implements MemoryCache {
+    private final LruResourceCache images;
+    private final LruResourceCache smallImages;
+    private final long maxSmallImageSize;
+    @Nullable
+    private ResourceRemovedListener listener;
+
+    FastImageMemoryCache(long size, long smallImagesSize, long maxSmallImageSize) {
+        this.images = new LruResourceCache(size);
+        this.smallImages = new LruResourceCache(smallImagesSize);
+        this.maxSmallImageSize = maxSmallImageSize;
+    }
+
+    @Override
+    public long getCurrentSize() {
+        return images.getCurrentSize() + smallImages.getCurrentSize();
+    }
+
+    @Override
+    public long getMaxSize() {
+        return images.getMaxSize() + smallImages.getMaxSize();
+    }
+
+    @Override
+    public void setSizeMultiplier(float multiplier) {
+        images.setSizeMultiplier(multiplier);
+        smallImages.setSizeMultiplier(multiplier);
+    }
+
+    @Nullable
+    @Override
+    public Resource<?> remove(@NonNull Key key) {
+        final Resource<?> removed = smallImages.remove(key);
+        return removed != null ? removed : images.remove(key);
+    }
+
+    @Nullable
+    @Override
+    public Resource<?> put(@NonNull Key key, @Nullable Resource<?> resource) {
+        if (resource != null && resource.getSize() <= maxSmallImageSize) {
+            final Resource<?> previous = images.remove(key);
+            final Resource<?> replaced = smallImages.put(key, resource);
+            onDisplaced(previous, resource);
+            return replaced != null ? replaced : previous;
+        }
+        final Resource<?> previous = smallImages.remove(key);
+        final Resource<?> replaced = images.put(key, resource);
+        onDisplaced(previous, resource);
+        return replaced != null ? replaced : previous;
+    }
+
+    /**
+     * The tiers only notify the listener of what they evict or replace themselves, like Glide's
+     * LruCache does, so the resource an entry had in the other tier is released here.
+     */
+    private void onDisplaced(@Nullable Resource<?> previous, @Nullable Resource<?> resource) {
+        if (previous != null && previous != resource && listener != null) {
+            listener.onResourceRemoved(previous);
+        }
+    }
+
+    @Override
+    public void setResourceRemovedListener(@NonNull ResourceRemovedListener listener) {
+        this.listener = listener;
+        images.setResourceRemovedListener(listener);
+        smallImages.setResourceRemovedListener(listener);
+    }
+
+    @Override
+    public void clearMemory() {
+        images.clearMemory();
+        smallImages.clearMemory();
+    }
+
+    @Override
+    public void trimMemory(int level) {
+        images.trimMemory(level);
+        smallImages.trimMemory(level);
+    }
+}
@@ -0,0 +1,99 @@
+package com.dylanvann.fastimage;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.MemoryCategory;
+import com.facebook.react.bridge.LifecycleEventListener;
+
+/**
+ * Trims Glide's memory step by step as memory gets low, instead of only at the levels Glide reacts
+ * to by itself.
+ * <p>
+ * Images on screen are held by Glide's active resources, not the memory cache, so they are never
+ * released here. The memory cache only holds images that are off screen.
+ * <ul>
+ * <li>Running moderate: the bitmap and array pools are emptied.</li>
+ * <li>Running low and UI hidden: the memory cache is also trimmed to half.</li>
+ * <li>Running critical, background and beyond: everything that isn't on screen is released.</li>
+ * </ul>
+ * While the app is in the background the caches are also kept at half their size, so they don't
+ * grow back before the app is in the foreground again.
+ */
+final class FastImageMemoryTrimmer implements ComponentCallbacks2, LifecycleEventListener {
+    private final Context context;
+    private volatile int lastTrimLevel;
+    private boolean isInBackground;
+
+    FastImageMemoryTrimmer(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    void register() {
+        context.registerComponentCallbacks(this);
+    }
+
+    void unregister() {
+        context.unregisterComponentCallbacks(this);
+    }
+
+    int getLastTrimLevel() {
+        return lastTrimLevel;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        lastTrimLevel = level;
+        // Don't initialize Glide just to trim it. Without FastImageGlideModule Glide's own callbacks
+        // still apply.
+        if (!FastImageGlideModule.isApplied()) {
+            return;
+        }
+        final Glide glide = Glide.get(context);
+
+        if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            glide.clearMemory();
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            glide.getBitmapPool().clearMemory();
+            glide.getArrayPool().clearMemory();
+            // Glide trims its memory cache to half at this level.
+            glide.trimMemory(TRIM_MEMORY_UI_HIDDEN);
+        } else if (level >= TRIM_MEMORY_RUNNING_MODERATE) {
+            glide.getBitmapPool().clearMemory();
+            glide.getArrayPool().clearMemory();
+        }
+
+        if (level >= TRIM_MEMORY_UI_HIDDEN && !isInBackground) {
+            isInBackground = true;
+            glide.setMemoryCategory(MemoryCategory.LOW);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    @Override
+    public void onHostResume() {
+        lastTrimLevel = 0;
+        if (isInBackground) {
+            isInBackground = false;
+            Glide.get(context).setMemoryCategory(MemoryCategory.NORMAL);
+        }
+    }
+
+    @Override
+    public void onHostPause() {
+    }
+
+    @Override
+    public void onHostDestroy() {
+    }
+}
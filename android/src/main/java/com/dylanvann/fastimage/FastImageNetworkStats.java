@@ -0,0 +1,291 @@
+package com.dylanvann.fastimage;
+
+import android.os.SystemClock;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.HttpUrl;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Timings of the image requests, to tell time spent waiting for a connection from time spent
+ * transferring images. The events still reach the listeners of the app's client, see
+ * {@link #forwardingTo(EventListener.Factory)}.
+ * <p>
+ * For each request the wait lasts from when it is enqueued until it has a connection, which covers
+ * the time queued in the dispatcher plus DNS lookups and connecting; those two are also timed on
+ * their own. The transfer lasts from sending the request until the body is read.
+ */
+final class FastImageNetworkStats implements EventListener.Factory {
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong waitTime = new AtomicLong();
+    private final AtomicLong maxWaitTime = new AtomicLong();
+    private final AtomicLong dnsTime = new AtomicLong();
+    private final AtomicLong connectTime = new AtomicLong();
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong transferTime = new AtomicLong();
+
+    @Override
+    public EventListener create(Call call) {
+        return new CallListener(EventListener.NONE);
+    }
+
+    /**
+     * @return a factory of listeners that time each call and pass its events on to the listener
+     * the app's factory creates for it, so the app's own metrics and tracing keep working.
+     */
+    EventListener.Factory forwardingTo(final EventListener.Factory appFactory) {
+        return new EventListener.Factory() {
+            @Override
+            public EventListener create(Call call) {
+                return new CallListener(appFactory.create(call));
+            }
+        };
+    }
+
+    /**
+     * @param dispatcher     the dispatcher of the image client, its current load is included.
+     * @param connectionPool the connection pool of the image client.
+     */
+    WritableMap toMap(@Nullable Dispatcher dispatcher, @Nullable ConnectionPool connectionPool) {
+        final WritableMap map = Arguments.createMap();
+        map.putDouble("requests", requests.get());
+        map.putDouble("failures", failures.get());
+        map.putDouble("bytes", bytes.get());
+        map.putDouble("waitTime", waitTime.get());
+        map.putDouble("maxWaitTime", maxWaitTime.get());
+        map.putDouble("dnsTime", dnsTime.get());
+        map.putDouble("connectTime", connectTime.get());
+        map.putDouble("connections", connections.get());
+        map.putDouble("transferTime", transferTime.get());
+        if (dispatcher != null) {
+            map.putInt("runningRequests", dispatcher.runningCallsCount());
+            map.putInt("queuedRequests", dispatcher.queuedCallsCount());
+        }
+        if (connectionPool != null) {
+            map.putInt("openConnections", connectionPool.connectionCount());
+            map.putInt("idleConnections", connectionPool.idleConnectionCount());
+        }
+        return map;
+    }
+
+    private static long now() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    private static void max(AtomicLong max, long value) {
+        long current;
+        do {
+            current = max.get();
+        } while (value > current && !max.compareAndSet(current, value));
+    }
+
+    /**
+     * Events of one call arrive one after the other, though not always on the same thread. Every
+     * event is passed on to the listener of the app's client first.
+     */
+    private final class CallListener extends EventListener {
+        private final EventListener app;
+        private volatile long callStart;
+        private volatile long dnsStart;
+        private volatile long connectStart;
+        private volatile long requestStart;
+        private volatile boolean hasConnection;
+
+        CallListener(EventListener app) {
+            this.app = app;
+        }
+
+        @Override
+        public void callStart(Call call) {
+            app.callStart(call);
+            callStart = now();
+            requests.incrementAndGet();
+        }
+
+        @Override
+        public void proxySelectStart(Call call, HttpUrl url) {
+            app.proxySelectStart(call, url);
+        }
+
+        @Override
+        public void proxySelectEnd(Call call, HttpUrl url, List<Proxy> proxies) {
+            app.proxySelectEnd(call, url, proxies);
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            app.dnsStart(call, domainName);
+            dnsStart = now();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+            app.dnsEnd(call, domainName, inetAddressList);
+            dnsTime.addAndGet(now() - dnsStart);
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            app.connectStart(call, inetSocketAddress, proxy);
+            connectStart = now();
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            app.secureConnectStart(call);
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, @Nullable Handshake handshake) {
+            app.secureConnectEnd(call, handshake);
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, @Nullable Protocol protocol) {
+            app.connectEnd(call, inetSocketAddress, proxy, protocol);
+            connectTime.addAndGet(now() - connectStart);
+            connections.incrementAndGet();
+        }
+
+        @Override
+        public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, @Nullable Protocol protocol, IOException ioe) {
+            app.connectFailed(call, inetSocketAddress, proxy, protocol, ioe);
+            connectTime.addAndGet(now() - connectStart);
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            app.connectionAcquired(call, connection);
+            if (hasConnection) {
+                // A retry or redirect, the wait was counted already.
+                return;
+            }
+            hasConnection = true;
+            final long wait = now() - callStart;
+            waitTime.addAndGet(wait);
+            max(maxWaitTime, wait);
+        }
+
+        @Override
+        public void connectionReleased(Call call, Connection connection) {
+            app.connectionReleased(call, connection);
+        }
+
+        @Override
+        public void requestHeadersStart(Call call) {
+            app.requestHeadersStart(call);
+            if (requestStart == 0) {
+                requestStart = now();
+            }
+        }
+
+        @Override
+        public void requestHeadersEnd(Call call, Request request) {
+            app.requestHeadersEnd(call, request);
+        }
+
+        @Override
+        public void requestBodyStart(Call call) {
+            app.requestBodyStart(call);
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            app.requestBodyEnd(call, byteCount);
+        }
+
+        @Override
+        public void requestFailed(Call call, IOException ioe) {
+            app.requestFailed(call, ioe);
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            app.responseHeadersStart(call);
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            app.responseHeadersEnd(call, response);
+        }
+
+        @Override
+        public void responseBodyStart(Call call) {
+            app.responseBodyStart(call);
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            app.responseBodyEnd(call, byteCount);
+            bytes.addAndGet(byteCount);
+        }
+
+        @Override
+        public void responseFailed(Call call, IOException ioe) {
+            app.responseFailed(call, ioe);
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            app.callEnd(call);
+            if (requestStart != 0) {
+                transferTime.addAndGet(now() - requestStart);
+            }
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            app.callFailed(call, ioe);
+            failures.incrementAndGet();
+            if (requestStart != 0) {
+                transferTime.addAndGet(now() - requestStart);
+            }
+        }
+
+        @Override
+        public void canceled(Call call) {
+            app.canceled(call);
+        }
+
+        @Override
+        public void satisfactionFailure(Call call, Response response) {
+            app.satisfactionFailure(call, response);
+        }
+
+        @Override
+        public void cacheHit(Call call, Response response) {
+            app.cacheHit(call, response);
+        }
+
+        @Override
+        public void cacheMiss(Call call) {
+            app.cacheMiss(call);
+        }
+
+        @Override
+        public void cacheConditionalHit(Call call, Response cachedResponse) {
+            app.cacheConditionalHit(call, cachedResponse);
+        }
+    }
+}
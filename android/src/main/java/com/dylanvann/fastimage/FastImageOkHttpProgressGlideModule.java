@@ -1,6 +1,9 @@
 package com.dylanvann.fastimage;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
 import androidx.annotation.NonNull;
 
 import com.bumptech.glide.Glide;
@@ -9,17 +12,30 @@ import com.bumptech.glide.annotation.GlideModule;
 import com.bumptech.glide.integration.okhttp3.OkHttpUrlLoader;
 import com.bumptech.glide.load.model.GlideUrl;
 import com.bumptech.glide.module.LibraryGlideModule;
+import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.modules.network.OkHttpClientProvider;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import okhttp3.Cache;
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
 import okhttp3.Interceptor;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
@@ -29,10 +45,30 @@ import okio.ForwardingSource;
 import okio.Okio;
 import okio.Source;
 
+import javax.annotation.Nullable;
+
 @GlideModule
 public class FastImageOkHttpProgressGlideModule extends LibraryGlideModule {
 
+    /**
+     * Marks requests of images with the 'web' cache control, see {@link #createCallFactory}.
+     */
+    static final String HTTP_CACHE_HEADER = "X-FastImage-Http-Cache";
+    private static final String HTTP_CACHE_DIRECTORY = "fast_image_http_cache";
+    private static final long DEFAULT_HTTP_CACHE_SIZE = 50 * 1024 * 1024;
+    private static final int DEFAULT_MAX_REQUESTS = 64;
+    // OkHttp's default is 5, too few for a screen of thumbnails from one CDN.
+    private static final int DEFAULT_MAX_REQUESTS_PER_HOST = 16;
+    private static final int DEFAULT_CONNECTION_POOL_SIZE = 8;
+    private static final long DEFAULT_CONNECTION_KEEP_ALIVE = 5 * 60 * 1000;
+
+    private static final FastImageNetworkStats networkStats = new FastImageNetworkStats();
+
     private static DispatchingProgressListener progressListener = new DispatchingProgressListener();
+    @Nullable
+    private static volatile OkHttpClient imageClient;
+    @Nullable
+    private static volatile Cache httpCache;
 
     @Override
     public void registerComponents(
@@ -40,13 +76,170 @@ public class FastImageOkHttpProgressGlideModule extends LibraryGlideModule {
             @NonNull Glide glide,
             @NonNull Registry registry
     ) {
-        OkHttpClient client = OkHttpClientProvider
-                .getOkHttpClient()
-                .newBuilder()
+        final FastImageCacheConfig config = FastImageCacheConfig.load(context);
+        final long httpCacheSize = config.getLong(FastImageCacheConfig.HTTP_CACHE_SIZE, DEFAULT_HTTP_CACHE_SIZE);
+        final Cache cache = new Cache(new File(context.getCacheDir(), HTTP_CACHE_DIRECTORY), httpCacheSize);
+        httpCache = cache;
+        OkHttpClient client = createClientBuilder(config)
+                // Glide's disk cache stores the images, see createCallFactory for 'web' ones.
+                .cache(null)
                 .addInterceptor(createInterceptor(progressListener))
+                .addInterceptor(createValidatorsInterceptor(FastImageValidators.get(context)))
+                .addInterceptor(createCacheKeyInterceptor())
                 .build();
-        OkHttpUrlLoader.Factory factory = new OkHttpUrlLoader.Factory(client);
-        registry.replace(GlideUrl.class, InputStream.class, factory);
+        imageClient = client;
+        OkHttpUrlLoader.Factory factory = new OkHttpUrlLoader.Factory(createCallFactory(client, cache));
+        registry.replace(GlideUrl.class, InputStream.class, new FastImageCoalescingUrlLoader.Factory(context, factory));
+    }
+
+    /**
+     * Images get their own dispatcher, connection pool and DNS cache, so a screen full of images
+     * doesn't queue behind the app's API calls, or the other way around. Interceptors, cookies,
+     * certificate pinning and event listeners of the app's client are kept.
+     */
+    private static OkHttpClient.Builder createClientBuilder(FastImageCacheConfig config) {
+        final OkHttpClient appClient = OkHttpClientProvider.getOkHttpClient();
+        final Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(config.getInt(FastImageCacheConfig.MAX_REQUESTS, DEFAULT_MAX_REQUESTS));
+        dispatcher.setMaxRequestsPerHost(config.getInt(FastImageCacheConfig.MAX_REQUESTS_PER_HOST, DEFAULT_MAX_REQUESTS_PER_HOST));
+        final OkHttpClient.Builder builder = appClient
+                .newBuilder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(
+                        config.getInt(FastImageCacheConfig.CONNECTION_POOL_SIZE, DEFAULT_CONNECTION_POOL_SIZE),
+                        config.getLong(FastImageCacheConfig.CONNECTION_KEEP_ALIVE, DEFAULT_CONNECTION_KEEP_ALIVE),
+                        TimeUnit.MILLISECONDS
+                ))
+                // Requests to the same CDN share one multiplexed connection where the server allows it.
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .dns(new FastImageDns(
+                        appClient.dns(),
+                        config.getLong(FastImageCacheConfig.DNS_CACHE_TIME_TO_LIVE, FastImageDns.DEFAULT_TIME_TO_LIVE)
+                ))
+                // Keeps the app's event listeners, which also see the image requests.
+                .eventListenerFactory(networkStats.forwardingTo(appClient.eventListenerFactory()));
+        // The app's timeouts are kept unless configured.
+        final long connectTimeout = config.getLong(FastImageCacheConfig.CONNECT_TIMEOUT, -1);
+        if (connectTimeout >= 0) {
+            builder.connectTimeout(connectTimeout, TimeUnit.MILLISECONDS);
+        }
+        final long readTimeout = config.getLong(FastImageCacheConfig.READ_TIMEOUT, -1);
+        if (readTimeout >= 0) {
+            builder.readTimeout(readTimeout, TimeUnit.MILLISECONDS);
+        }
+        return builder;
+    }
+
+    /**
+     * @return timings and counts of the requests made by the image client.
+     */
+    static WritableMap getNetworkStats() {
+        final OkHttpClient client = imageClient;
+        return networkStats.toMap(
+                client != null ? client.dispatcher() : null,
+                client != null ? client.connectionPool() : null
+        );
+    }
+
+    /**
+     * @return the client Glide loads images with.
+     */
+    static OkHttpClient getClient(Context context) {
+        if (imageClient == null) {
+            // Registers the components.
+            Glide.get(context);
+        }
+        return imageClient != null ? imageClient : OkHttpClientProvider.getOkHttpClient();
+    }
+
+    @Nullable
+    static Cache getHttpCache() {
+        return httpCache;
+    }
+
+    /**
+     * Removes the responses of the urls from the HTTP cache. Does disk IO, so it should be called on
+     * a background thread.
+     */
+    static void removeFromHttpCache(Collection<String> urls) {
+        final Cache cache = httpCache;
+        if (cache == null) {
+            return;
+        }
+        final Set<String> removedUrls = new HashSet<>(urls);
+        try {
+            final Iterator<String> iterator = cache.urls();
+            while (iterator.hasNext()) {
+                if (removedUrls.contains(iterator.next())) {
+                    iterator.remove();
+                }
+            }
+        } catch (IOException ignored) {
+            // The responses expire by themselves.
+        }
+    }
+
+    /**
+     * Only images with the 'web' cache control are stored in the HTTP cache, Glide's disk cache
+     * already stores the others. They are loaded with a client that has the cache and otherwise
+     * shares everything with the image client, the requests sent are the same either way.
+     */
+    private static Call.Factory createCallFactory(final OkHttpClient client, Cache cache) {
+        final OkHttpClient webClient = client.newBuilder().cache(cache).build();
+        return new Call.Factory() {
+            @NonNull
+            @Override
+            public Call newCall(@NonNull Request request) {
+                if (request.header(HTTP_CACHE_HEADER) == null) {
+                    return client.newCall(request);
+                }
+                return webClient.newCall(request.newBuilder().removeHeader(HTTP_CACHE_HEADER).build());
+            }
+        };
+    }
+
+    /**
+     * Remembers the validators of every image that is downloaded, so it can be revalidated later.
+     */
+    private static Interceptor createValidatorsInterceptor(final FastImageValidators validators) {
+        return new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                final Response response = chain.proceed(chain.request());
+                if (response.code() == 200) {
+                    validators.record(
+                            getCacheKey(chain.request()),
+                            response.header("ETag"),
+                            response.header("Last-Modified")
+                    );
+                }
+                return response;
+            }
+        };
+    }
+
+    /**
+     * Removes the cache key of the image from the request, it is only meant for the interceptors
+     * before this one.
+     */
+    private static Interceptor createCacheKeyInterceptor() {
+        return new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                final Request request = chain.request();
+                if (request.header(FastImageGlideUrl.CACHE_KEY_HEADER) == null) {
+                    return chain.proceed(request);
+                }
+                return chain.proceed(request.newBuilder().removeHeader(FastImageGlideUrl.CACHE_KEY_HEADER).build());
+            }
+        };
+    }
+
+    /**
+     * @return the cache key of the image requested, progress and validators are tracked by it.
+     */
+    private static String getCacheKey(Request request) {
+        return FastImageGlideUrl.getCacheKey(request.url().toString(), request.header(FastImageGlideUrl.CACHE_KEY_HEADER));
     }
 
     private static Interceptor createInterceptor(final ResponseProgressListener listener) {
@@ -55,7 +248,11 @@ public class FastImageOkHttpProgressGlideModule extends LibraryGlideModule {
             public Response intercept(Chain chain) throws IOException {
                 Request request = chain.request();
                 Response response = chain.proceed(request);
-                final String key = request.url().toString();
+                final String key = getCacheKey(request);
+                if (!listener.isExpected(key)) {
+                    // Nobody listens to the progress of this image.
+                    return response;
+                }
                 return response
                         .newBuilder()
                         .body(new OkHttpProgressResponseBody(key, response.body(), listener))
@@ -73,45 +270,92 @@ public class FastImageOkHttpProgressGlideModule extends LibraryGlideModule {
     }
 
     private interface ResponseProgressListener {
+        boolean isExpected(String key);
+
         void update(String key, long bytesRead, long contentLength);
     }
 
-    private static class DispatchingProgressListener implements ResponseProgressListener {
-        private final Map<String, FastImageProgressListener> LISTENERS = new WeakHashMap<>();
-        private final Map<String, Long> PROGRESSES = new HashMap<>();
+    /**
+     * Collects progress from OkHttp threads and dispatches it on the UI thread, at most once per
+     * frame for each url. Network threads only write the latest byte counts and queue the url if it
+     * is not queued already, the frame callback then dispatches whatever the counts are by then.
+     */
+    private static class DispatchingProgressListener implements ResponseProgressListener, Choreographer.FrameCallback {
+        private final ConcurrentHashMap<String, Progress> PROGRESSES = new ConcurrentHashMap<>();
+        private final ConcurrentLinkedQueue<Progress> pendingProgresses = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean isFrameScheduled = new AtomicBoolean();
+        private final Handler mainHandler = new Handler(Looper.getMainLooper());
+        private final Runnable scheduleFrame = new Runnable() {
+            @Override
+            public void run() {
+                // The Choreographer is per looper, so it has to be obtained on the UI thread.
+                Choreographer.getInstance().postFrameCallback(DispatchingProgressListener.this);
+            }
+        };
 
         void forget(String key) {
-            LISTENERS.remove(key);
             PROGRESSES.remove(key);
         }
 
         void expect(String key, FastImageProgressListener listener) {
-            LISTENERS.put(key, listener);
+            final Progress progress = PROGRESSES.get(key);
+            if (progress == null || progress.listener != listener) {
+                PROGRESSES.put(key, new Progress(key, listener));
+            }
+        }
+
+        @Override
+        public boolean isExpected(String key) {
+            return PROGRESSES.containsKey(key);
         }
 
         @Override
         public void update(final String key, final long bytesRead, final long contentLength) {
-            final FastImageProgressListener listener = LISTENERS.get(key);
-            if (listener == null) {
+            final Progress progress = PROGRESSES.get(key);
+            if (progress == null) {
                 return;
             }
-            if (contentLength <= bytesRead) {
-                forget(key);
+            progress.bytesRead = bytesRead;
+            progress.contentLength = contentLength;
+            if (progress.isQueued.compareAndSet(false, true)) {
+                pendingProgresses.add(progress);
+                if (isFrameScheduled.compareAndSet(false, true)) {
+                    mainHandler.post(scheduleFrame);
+                }
             }
-            if (needsDispatch(key, bytesRead, contentLength, listener.getGranularityPercentage())) {
-                listener.onProgress(key, bytesRead, contentLength);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            // Cleared first so updates that arrive while dispatching schedule the next frame.
+            isFrameScheduled.set(false);
+            Progress progress;
+            while ((progress = pendingProgresses.poll()) != null) {
+                progress.isQueued.set(false);
+                final long bytesRead = progress.bytesRead;
+                final long contentLength = progress.contentLength;
+                if (PROGRESSES.get(progress.key) != progress) {
+                    // Forgotten while queued.
+                    continue;
+                }
+                final boolean isComplete = bytesRead == contentLength || (contentLength > 0 && bytesRead > contentLength);
+                if (isComplete) {
+                    PROGRESSES.remove(progress.key, progress);
+                }
+                if (isComplete || needsDispatch(progress, bytesRead, contentLength, progress.listener.getGranularityPercentage())) {
+                    progress.listener.onProgress(progress.key, bytesRead, contentLength);
+                }
             }
         }
 
-        private boolean needsDispatch(String key, long current, long total, float granularity) {
-            if (granularity == 0 || current == 0 || total == current) {
+        private boolean needsDispatch(Progress progress, long current, long total, float granularity) {
+            if (granularity == 0 || current == 0 || total <= 0) {
                 return true;
             }
             float percent = 100f * current / total;
-            long currentProgress = (long) (percent / granularity);
-            Long lastProgress = PROGRESSES.get(key);
-            if (lastProgress == null || currentProgress != lastProgress) {
-                PROGRESSES.put(key, currentProgress);
+            long currentStep = (long) (percent / granularity);
+            if (currentStep != progress.lastStep) {
+                progress.lastStep = currentStep;
                 return true;
             } else {
                 return false;
@@ -119,6 +363,22 @@ public class FastImageOkHttpProgressGlideModule extends LibraryGlideModule {
         }
     }
 
+    private static final class Progress {
+        final String key;
+        final FastImageProgressListener listener;
+        final AtomicBoolean isQueued = new AtomicBoolean();
+        // Written by network threads, read on the UI thread.
+        volatile long bytesRead;
+        volatile long contentLength;
+        // Only used on the UI thread.
+        long lastStep = -1;
+
+        Progress(String key, FastImageProgressListener listener) {
+            this.key = key;
+            this.listener = listener;
+        }
+    }
+
     private static class OkHttpProgressResponseBody extends ResponseBody {
         private final String key;
         private final ResponseBody responseBody;
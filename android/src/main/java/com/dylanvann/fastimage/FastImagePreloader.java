@@ -0,0 +1,409 @@
+package com.dylanvann.fastimage;
+
+import android.content.Context;
+import android.graphics.BitmapFactory;
+import android.graphics.drawable.Drawable;
+import android.util.LruCache;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.request.FutureTarget;
+import com.bumptech.glide.request.RequestOptions;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+/**
+ * Runs preloads off the main thread with bounded concurrency.
+ * <p>
+ * Only a few preloads are handed to Glide at a time, and they default to a low priority, so the
+ * requests of visible views never queue behind a large preload. Sources that are already being
+ * preloaded, or were preloaded recently, are not requested again. Preloads can be cancelled by the
+ * tag they were started with.
+ */
+final class FastImagePreloader {
+    private static final int MAX_CONCURRENT_PRELOADS = 3;
+    private static final int MAX_RECENT_RESULTS = 256;
+
+    static final String STATUS_SUCCESS = "success";
+    static final String STATUS_ERROR = "error";
+    static final String STATUS_CANCELLED = "cancelled";
+
+    private final Context context;
+    private final ThreadPoolExecutor executor;
+    private final AtomicInteger sequence = new AtomicInteger();
+    // Guarded by this.
+    private final Map<String, Task> tasks = new HashMap<>();
+    private final LruCache<String, Result> recentResults = new LruCache<>(MAX_RECENT_RESULTS);
+
+    FastImagePreloader(Context context) {
+        this.context = context.getApplicationContext();
+        this.executor = new ThreadPoolExecutor(
+                MAX_CONCURRENT_PRELOADS,
+                MAX_CONCURRENT_PRELOADS,
+                30,
+                TimeUnit.SECONDS,
+                // Tasks are comparable, so the queue hands out the most important one first.
+                new PriorityBlockingQueue<Runnable>(),
+                FastImageExecutors.newThreadFactory("fast-image-preload")
+        );
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Preloads the sources and resolves the promise with one result per source, in order.
+     */
+    void preload(ReadableArray sources, @Nullable String tag, Promise promise) {
+        final Batch batch = new Batch(sources.size(), tag, promise);
+        if (sources.size() == 0) {
+            batch.resolve();
+            return;
+        }
+
+        for (int i = 0; i < sources.size(); i++) {
+            final ReadableMap source = sources.getMap(i);
+            final FastImageSource imageSource;
+            try {
+                imageSource = FastImageViewConverter.getImageSource(context, source);
+            } catch (RuntimeException e) {
+                batch.setResult(i, Result.error(source.hasKey("uri") ? source.getString("uri") : null, e.getMessage()));
+                continue;
+            }
+            final String key = getKey(imageSource);
+            synchronized (this) {
+                final Result recentResult = recentResults.get(key);
+                if (recentResult != null && recentResult.isStillValid()) {
+                    batch.setResult(i, recentResult);
+                    continue;
+                }
+                Task task = tasks.get(key);
+                if (task == null) {
+                    task = new Task(key, imageSource, source, getPriority(source), sequence.getAndIncrement());
+                    tasks.put(key, task);
+                    task.waiters.add(new Waiter(batch, i));
+                    executor.execute(task);
+                } else {
+                    task.waiters.add(new Waiter(batch, i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Cancels the preloads started with the tag. Sources that were also requested by preloads with
+     * another tag keep loading for those.
+     */
+    void cancel(String tag) {
+        final List<Task> cancelledTasks = new ArrayList<>();
+        synchronized (this) {
+            for (Task task : tasks.values()) {
+                final Iterator<Waiter> iterator = task.waiters.iterator();
+                while (iterator.hasNext()) {
+                    final Waiter waiter = iterator.next();
+                    if (tag.equals(waiter.batch.tag)) {
+                        iterator.remove();
+                        waiter.batch.setResult(waiter.index, Result.cancelled(task.imageSource.getSource()));
+                    }
+                }
+                if (task.waiters.isEmpty()) {
+                    cancelledTasks.add(task);
+                }
+            }
+            for (Task task : cancelledTasks) {
+                tasks.remove(task.key);
+            }
+        }
+        for (Task task : cancelledTasks) {
+            if (!executor.remove(task)) {
+                task.cancel();
+            }
+        }
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void finish(Task task, Result result) {
+        final List<Waiter> waiters;
+        synchronized (this) {
+            if (tasks.get(task.key) != task) {
+                // Cancelled, the waiters already have their results.
+                return;
+            }
+            tasks.remove(task.key);
+            if (STATUS_SUCCESS.equals(result.status)) {
+                recentResults.put(task.key, result);
+            }
+            waiters = new ArrayList<>(task.waiters);
+        }
+        for (Waiter waiter : waiters) {
+            waiter.batch.setResult(waiter.index, result);
+        }
+    }
+
+    /**
+     * @return the key preloads of the same image share a task and a result by. An explicit size is
+     * part of it, the memory cache is warmed at that size.
+     */
+    private static String getKey(FastImageSource imageSource) {
+        final Object model = imageSource.getSourceForLoad();
+        final String key = model instanceof GlideUrl ? ((GlideUrl) model).getCacheKey() : String.valueOf(model);
+        if (imageSource.hasExplicitSize()) {
+            return key + "#size=" + imageSource.getWidth() + "x" + imageSource.getHeight();
+        }
+        return key;
+    }
+
+    private static Priority getPriority(ReadableMap source) {
+        // Unless asked otherwise preloads give way to the images that are on screen.
+        return source.hasKey("priority") ? FastImageViewConverter.getPriority(source) : Priority.LOW;
+    }
+
+    private final class Task implements Runnable, Comparable<Task> {
+        final String key;
+        final FastImageSource imageSource;
+        final ReadableMap source;
+        final Priority priority;
+        final int order;
+        // Guarded by the preloader.
+        final List<Waiter> waiters = new ArrayList<>();
+        @Nullable
+        private FutureTarget<?> future;
+        private boolean isCancelled;
+
+        Task(String key, FastImageSource imageSource, ReadableMap source, Priority priority, int order) {
+            this.key = key;
+            this.imageSource = imageSource;
+            this.source = source;
+            this.priority = priority;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            // Priority.IMMEDIATE is the lowest ordinal.
+            final int byPriority = priority.ordinal() - other.priority.ordinal();
+            return byPriority != 0 ? byPriority : order - other.order;
+        }
+
+        @Override
+        public void run() {
+            Result result;
+            try {
+                result = load();
+            } catch (CancellationException e) {
+                result = Result.cancelled(imageSource.getSource());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result = Result.cancelled(imageSource.getSource());
+            } catch (Exception e) {
+                result = Result.error(imageSource.getSource(), e.getMessage());
+            }
+            finish(this, result);
+        }
+
+        void cancel() {
+            final FutureTarget<?> toCancel;
+            synchronized (this) {
+                isCancelled = true;
+                toCancel = future;
+            }
+            if (toCancel != null) {
+                toCancel.cancel(true);
+            }
+        }
+
+        private Result load() throws Exception {
+            final RequestManager requestManager = Glide.with(context);
+            final Object model = imageSource.getSourceForLoad();
+            final RequestOptions options = FastImageViewConverter.getOptions(context, imageSource, source).priority(priority);
+
+            if (model instanceof GlideUrl && options.getDiskCacheStrategy() != DiskCacheStrategy.NONE) {
+                FastImageCacheIndex.get(context).record((GlideUrl) model);
+                // Only download into the disk cache, there's no need to decode anything until a view
+                // shows the image.
+                final File file = await(requestManager
+                        .asFile()
+                        .load(model)
+                        .apply(FastImageViewConverter.getDataOptions(options))
+                        .submit());
+                if (imageSource.hasExplicitSize()) {
+                    // The size the view will use is known, so warm the memory cache too.
+                    await(requestManager.load(model).apply(options).submit());
+                }
+                return Result.fromFile(imageSource.getSource(), file);
+            }
+
+            final Drawable drawable = await(requestManager.load(model).apply(options).submit());
+            final Result result = Result.success(imageSource.getSource(), drawable.getIntrinsicWidth(), drawable.getIntrinsicHeight());
+            if (imageSource.isLocalFile()) {
+                final String path = imageSource.getUri().getPath();
+                if (path != null) {
+                    result.path = path;
+                    result.bytes = new File(path).length();
+                }
+            }
+            return result;
+        }
+
+        private <T> T await(FutureTarget<T> target) throws Exception {
+            synchronized (this) {
+                if (isCancelled) {
+                    Glide.with(context).clear(target);
+                    throw new CancellationException();
+                }
+                future = target;
+            }
+            try {
+                return target.get();
+            } finally {
+                synchronized (this) {
+                    future = null;
+                }
+                // The file or drawable stays in Glide's caches.
+                Glide.with(context).clear(target);
+            }
+        }
+    }
+
+    private static final class Waiter {
+        final Batch batch;
+        final int index;
+
+        Waiter(Batch batch, int index) {
+            this.batch = batch;
+            this.index = index;
+        }
+    }
+
+    /**
+     * The sources of one call to preload, resolved once all of them have a result.
+     */
+    private static final class Batch {
+        @Nullable
+        final String tag;
+        private final Promise promise;
+        private final Result[] results;
+        private int remaining;
+
+        Batch(int size, @Nullable String tag, Promise promise) {
+            this.tag = tag;
+            this.promise = promise;
+            this.results = new Result[size];
+            this.remaining = size;
+        }
+
+        void setResult(int index, Result result) {
+            synchronized (this) {
+                if (results[index] != null) {
+                    return;
+                }
+                results[index] = result;
+                remaining--;
+                if (remaining > 0) {
+                    return;
+                }
+            }
+            resolve();
+        }
+
+        void resolve() {
+            final WritableArray array = Arguments.createArray();
+            for (Result result : results) {
+                array.pushMap(result.toMap());
+            }
+            promise.resolve(array);
+        }
+    }
+
+    static final class Result {
+        final String uri;
+        final String status;
+        @Nullable
+        String path;
+        @Nullable
+        String message;
+        int width;
+        int height;
+        long bytes = -1;
+
+        private Result(String uri, String status) {
+            this.uri = uri;
+            this.status = status;
+        }
+
+        static Result success(String uri, int width, int height) {
+            final Result result = new Result(uri, STATUS_SUCCESS);
+            result.width = width;
+            result.height = height;
+            return result;
+        }
+
+        static Result fromFile(String uri, File file) {
+            // Only reads the header of the image.
+            final BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+            final Result result = success(uri, options.outWidth, options.outHeight);
+            result.path = file.getAbsolutePath();
+            result.bytes = file.length();
+            return result;
+        }
+
+        static Result error(@Nullable String uri, @Nullable String message) {
+            final Result result = new Result(uri, STATUS_ERROR);
+            result.message = message;
+            return result;
+        }
+
+        static Result cancelled(String uri) {
+            return new Result(uri, STATUS_CANCELLED);
+        }
+
+        boolean isStillValid() {
+            // Only files can be checked, they may have been evicted from the disk cache since.
+            return path != null && new File(path).exists();
+        }
+
+        WritableMap toMap() {
+            final WritableMap map = Arguments.createMap();
+            map.putString("uri", uri);
+            map.putString("status", status);
+            if (STATUS_SUCCESS.equals(status)) {
+                map.putInt("width", width);
+                map.putInt("height", height);
+            }
+            if (path != null) {
+                map.putString("path", path);
+            }
+            if (bytes >= 0) {
+                map.putDouble("bytes", bytes);
+            }
+            if (message != null) {
+                map.putString("message", message);
+            }
+            return map;
+        }
+    }
+}
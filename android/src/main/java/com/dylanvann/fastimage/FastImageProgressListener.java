@@ -2,6 +2,9 @@ package com.dylanvann.fastimage;
 
 public interface FastImageProgressListener {
 
+    /**
+     * Called on the UI thread, at most once per frame for a given key.
+     */
     void onProgress(String key, long bytesRead, long expectedLength);
 
     /**
@@ -4,26 +4,42 @@ import android.graphics.drawable.Drawable;
 
 import com.bumptech.glide.load.DataSource;
 import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.load.model.GlideUrl;
 import com.bumptech.glide.request.RequestListener;
 import com.bumptech.glide.request.target.ImageViewTarget;
 import com.bumptech.glide.request.target.Target;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.WritableNativeMap;
-import com.facebook.react.uimanager.ThemedReactContext;
-import com.facebook.react.uimanager.events.RCTEventEmitter;
 
 public class FastImageRequestListener implements RequestListener<Drawable> {
     static final String REACT_ON_ERROR_EVENT = "onFastImageError";
     static final String REACT_ON_LOAD_EVENT = "onFastImageLoad";
     static final String REACT_ON_LOAD_END_EVENT = "onFastImageLoadEnd";
 
+    static final long NO_REVALIDATION = -1;
+
     private String key;
+    // Max age of an image with the 'staleWhileRevalidate' cache control, NO_REVALIDATION otherwise.
+    private long maxAge;
 
     FastImageRequestListener(String key) {
+        this(key, NO_REVALIDATION);
+    }
+
+    FastImageRequestListener(String key, long maxAge) {
+        this.key = key;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Points the listener to the next load of its view, listeners are reused by views.
+     */
+    void update(String key, long maxAge) {
         this.key = key;
+        this.maxAge = maxAge;
     }
 
-    private static WritableMap mapFromResource(Drawable resource) {
+    static WritableMap mapFromResource(Drawable resource) {
         WritableMap resourceData = new WritableNativeMap();
         resourceData.putInt("width", resource.getIntrinsicWidth());
         resourceData.putInt("height", resource.getIntrinsicHeight());
@@ -37,11 +53,14 @@ public class FastImageRequestListener implements RequestListener<Drawable> {
             return false;
         }
         FastImageViewWithUrl view = (FastImageViewWithUrl) ((ImageViewTarget) target).getView();
-        ThemedReactContext context = (ThemedReactContext) view.getContext();
-        RCTEventEmitter eventEmitter = context.getJSModule(RCTEventEmitter.class);
-        int viewId = view.getId();
-        eventEmitter.receiveEvent(viewId, REACT_ON_ERROR_EVENT, new WritableNativeMap());
-        eventEmitter.receiveEvent(viewId, REACT_ON_LOAD_END_EVENT, new WritableNativeMap());
+        view.isLoading = false;
+        view.isLoaded = false;
+        if (view.hasListener(FastImageViewWithUrl.LISTENER_ERROR)) {
+            FastImageEventDispatcher.dispatch(view, REACT_ON_ERROR_EVENT, new WritableNativeMap());
+        }
+        if (view.hasListener(FastImageViewWithUrl.LISTENER_LOAD_END)) {
+            FastImageEventDispatcher.dispatch(view, REACT_ON_LOAD_END_EVENT, new WritableNativeMap());
+        }
         return false;
     }
 
@@ -51,11 +70,25 @@ public class FastImageRequestListener implements RequestListener<Drawable> {
             return false;
         }
         FastImageViewWithUrl view = (FastImageViewWithUrl) ((ImageViewTarget) target).getView();
-        ThemedReactContext context = (ThemedReactContext) view.getContext();
-        RCTEventEmitter eventEmitter = context.getJSModule(RCTEventEmitter.class);
-        int viewId = view.getId();
-        eventEmitter.receiveEvent(viewId, REACT_ON_LOAD_EVENT, mapFromResource(resource));
-        eventEmitter.receiveEvent(viewId, REACT_ON_LOAD_END_EVENT, new WritableNativeMap());
+        view.isLoading = false;
+        view.isLoaded = true;
+        if (model instanceof GlideUrl) {
+            FastImageSourceSet.onLoaded(((GlideUrl) model).toStringUrl());
+        }
+        if (maxAge != NO_REVALIDATION && model instanceof GlideUrl) {
+            if (dataSource == DataSource.REMOTE) {
+                FastImageRevalidator.onDownloaded((GlideUrl) model);
+            } else {
+                // The cached image is shown right away, it is swapped if it changed on the server.
+                FastImageRevalidator.revalidateIfStale(view.getContext(), (GlideUrl) model, maxAge);
+            }
+        }
+        if (view.hasListener(FastImageViewWithUrl.LISTENER_LOAD)) {
+            FastImageEventDispatcher.dispatch(view, REACT_ON_LOAD_EVENT, mapFromResource(resource));
+        }
+        if (view.hasListener(FastImageViewWithUrl.LISTENER_LOAD_END)) {
+            FastImageEventDispatcher.dispatch(view, REACT_ON_LOAD_END_EVENT, new WritableNativeMap());
+        }
         return false;
     }
 }
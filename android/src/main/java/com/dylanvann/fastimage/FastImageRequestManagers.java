@@ -0,0 +1,160 @@
+package com.dylanvann.fastimage;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.os.Build;
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.manager.Lifecycle;
+import com.bumptech.glide.manager.LifecycleListener;
+import com.bumptech.glide.manager.RequestManagerTreeNode;
+import com.facebook.react.uimanager.ThemedReactContext;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * The Glide request managers of the views, one per activity, so the images of each screen follow
+ * the lifecycle of that screen: they pause when it stops and are cancelled when it is destroyed.
+ * Views that don't belong to an activity share a request manager that, like Glide's one for the
+ * application, is always started.
+ * <p>
+ * Requests can also be paused from JS, e.g. during a fling, see {@link #pause()}. Only the requests
+ * of views are: preloads and cache lookups block on Glide's request manager for the application,
+ * which is never paused.
+ * <p>
+ * Only used on the UI thread.
+ */
+final class FastImageRequestManagers {
+    private static final Map<Activity, RequestManager> REQUEST_MANAGERS = new WeakHashMap<>();
+    // Like Glide's lifecycle for the application, it is started from the beginning and never stops.
+    private static final Lifecycle APPLICATION_LIFECYCLE = new Lifecycle() {
+        @Override
+        public void addListener(@NonNull LifecycleListener listener) {
+            listener.onStart();
+        }
+
+        @Override
+        public void removeListener(@NonNull LifecycleListener listener) {
+        }
+    };
+    private static final RequestManagerTreeNode NO_DESCENDANTS = new RequestManagerTreeNode() {
+        @NonNull
+        @Override
+        public Set<RequestManager> getDescendants() {
+            return Collections.emptySet();
+        }
+    };
+
+    // Of the views that don't belong to an activity.
+    @Nullable
+    private static RequestManager applicationRequestManager;
+    private static boolean isPaused;
+
+    private FastImageRequestManagers() {
+    }
+
+    /**
+     * @return the request manager of the activity of the context, or null if it is being destroyed.
+     */
+    @Nullable
+    static RequestManager get(Context context) {
+        final Activity activity = getActivityFromContext(context);
+        if (activity == null) {
+            if (applicationRequestManager == null) {
+                final Context applicationContext = context.getApplicationContext();
+                applicationRequestManager = new RequestManager(
+                        Glide.get(applicationContext),
+                        APPLICATION_LIFECYCLE,
+                        NO_DESCENDANTS,
+                        applicationContext
+                );
+                if (isPaused) {
+                    applicationRequestManager.pauseRequests();
+                }
+            }
+            return applicationRequestManager;
+        }
+        if (isActivityDestroyed(activity)) {
+            REQUEST_MANAGERS.remove(activity);
+            return null;
+        }
+        RequestManager requestManager = REQUEST_MANAGERS.get(activity);
+        if (requestManager == null) {
+            requestManager = Glide.with(activity);
+            if (isPaused) {
+                requestManager.pauseRequests();
+            }
+            REQUEST_MANAGERS.put(activity, requestManager);
+        }
+        return requestManager;
+    }
+
+    /**
+     * Pauses the requests of every activity and of the application until {@link #resume()}, or until
+     * the activity starts again. Requests in progress are cancelled and made again when resumed, new
+     * ones wait.
+     */
+    static void pause() {
+        isPaused = true;
+        for (RequestManager requestManager : REQUEST_MANAGERS.values()) {
+            requestManager.pauseRequests();
+        }
+        if (applicationRequestManager != null) {
+            applicationRequestManager.pauseRequests();
+        }
+    }
+
+    static void resume() {
+        isPaused = false;
+        for (RequestManager requestManager : REQUEST_MANAGERS.values()) {
+            requestManager.resumeRequests();
+        }
+        if (applicationRequestManager != null) {
+            applicationRequestManager.resumeRequests();
+        }
+    }
+
+    @Nullable
+    private static Activity getActivityFromContext(final Context context) {
+        if (context instanceof Activity) {
+            return (Activity) context;
+        }
+
+        if (context instanceof ThemedReactContext) {
+            final Context baseContext = ((ThemedReactContext) context).getBaseContext();
+            if (baseContext instanceof Activity) {
+                return (Activity) baseContext;
+            }
+
+            if (baseContext instanceof ContextWrapper) {
+                final ContextWrapper contextWrapper = (ContextWrapper) baseContext;
+                final Context wrapperBaseContext = contextWrapper.getBaseContext();
+                if (wrapperBaseContext instanceof Activity) {
+                    return (Activity) wrapperBaseContext;
+                }
+            }
+
+            // A surface that isn't hosted in an activity's root view.
+            return ((ThemedReactContext) context).getCurrentActivity();
+        }
+
+        return null;
+    }
+
+    private static boolean isActivityDestroyed(Activity activity) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            return activity.isDestroyed() || activity.isFinishing();
+        } else {
+            return activity.isDestroyed() || activity.isFinishing() || activity.isChangingConfigurations();
+        }
+
+    }
+}
@@ -0,0 +1,196 @@
+package com.dylanvann.fastimage;
+
+import android.content.Context;
+import android.os.SystemClock;
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.engine.cache.DiskCache;
+import com.bumptech.glide.load.model.GlideUrl;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.Okio;
+
+/**
+ * Checks whether a cached remote image changed on the server with a conditional request.
+ * <p>
+ * Unchanged images (304) are left alone, so they are neither downloaded nor decoded again. A changed
+ * image (200) is written to the disk cache as the next version of the image, which is then
+ * invalidated so views showing it reload it straight from the disk cache. Servers that don't send
+ * validators answer with the whole image, which is only treated as changed if its bytes differ from
+ * the cached ones. That costs a full download, so images shown from the caches are only revalidated
+ * automatically when they have validators.
+ */
+final class FastImageRevalidator {
+    static final long DEFAULT_MAX_AGE = 5 * 60 * 1000;
+    // A list showing the same image many times, or the reload of an image that just changed, doesn't
+    // revalidate it again.
+    private static final long MIN_REVALIDATION_INTERVAL = 1000;
+    private static final int BUFFER_SIZE = 8192;
+
+    // Uptime of the last time each image was revalidated or downloaded, by cache key.
+    private static final Map<String, Long> validatedAt = new ConcurrentHashMap<>();
+    private static final Set<String> revalidating = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private FastImageRevalidator() {
+    }
+
+    static void revalidate(final Context context, final GlideUrl glideUrl) {
+        revalidate(context, glideUrl, true);
+    }
+
+    /**
+     * Revalidates an image with the 'staleWhileRevalidate' cache control that was shown from the
+     * caches, unless it was revalidated or downloaded less than {@code maxAgeMs} ago.
+     */
+    static void revalidateIfStale(final Context context, final GlideUrl glideUrl, long maxAgeMs) {
+        final Long lastValidatedAt = validatedAt.get(glideUrl.getCacheKey());
+        if (lastValidatedAt != null
+                && SystemClock.uptimeMillis() - lastValidatedAt < Math.max(maxAgeMs, MIN_REVALIDATION_INTERVAL)) {
+            return;
+        }
+        revalidate(context, glideUrl, false);
+    }
+
+    /**
+     * Called when an image was downloaded, it is fresh for its max age.
+     */
+    static void onDownloaded(GlideUrl glideUrl) {
+        validatedAt.put(glideUrl.getCacheKey(), SystemClock.uptimeMillis());
+    }
+
+    private static void revalidate(final Context context, final GlideUrl glideUrl, final boolean reloadIfUncached) {
+        if (!revalidating.add(glideUrl.getCacheKey())) {
+            // Already on its way.
+            return;
+        }
+        FastImageExecutors.io().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    revalidateNow(context.getApplicationContext(), glideUrl, reloadIfUncached);
+                } finally {
+                    validatedAt.put(glideUrl.getCacheKey(), SystemClock.uptimeMillis());
+                    revalidating.remove(glideUrl.getCacheKey());
+                }
+            }
+        });
+    }
+
+    private static void revalidateNow(Context context, GlideUrl glideUrl, boolean reloadIfUncached) {
+        final String cacheKey = glideUrl.getCacheKey();
+        final FastImageCacheVersions versions = FastImageCacheVersions.get(context);
+        final DiskCache diskCache = FastImageDiskCacheFactory.getDiskCache();
+        if (diskCache == null) {
+            if (reloadIfUncached) {
+                // Nothing to compare the response with, load it again.
+                versions.invalidate(Collections.singleton(cacheKey));
+            }
+            return;
+        }
+
+        final Request.Builder request = new Request.Builder().url(glideUrl.toStringUrl());
+        for (Map.Entry<String, String> header : glideUrl.getHeaders().entrySet()) {
+            request.addHeader(header.getKey(), header.getValue());
+        }
+        final FastImageValidators.Validators validators = FastImageValidators.get(context).get(cacheKey);
+        if (validators == null && !reloadIfUncached) {
+            // Without validators the whole image is downloaded, only done when asked for explicitly.
+            return;
+        }
+        if (validators != null && validators.eTag != null) {
+            request.header("If-None-Match", validators.eTag);
+        }
+        if (validators != null && validators.lastModified != null) {
+            request.header("If-Modified-Since", validators.lastModified);
+        }
+
+        Response response = null;
+        try {
+            response = FastImageOkHttpProgressGlideModule.getClient(context).newCall(request.build()).execute();
+            final ResponseBody body = response.body();
+            if (response.code() != 200 || body == null) {
+                // Not modified, or the server failed and the cached image is still the best we have.
+                return;
+            }
+            final Key nextKey = versions.getNextDataCacheKey(cacheKey);
+            diskCache.put(nextKey, new DiskCache.Writer() {
+                @Override
+                public boolean write(@NonNull File file) {
+                    BufferedSink sink = null;
+                    try {
+                        sink = Okio.buffer(Okio.sink(file));
+                        sink.writeAll(body.source());
+                        return true;
+                    } catch (IOException e) {
+                        return false;
+                    } finally {
+                        closeQuietly(sink);
+                    }
+                }
+            });
+            final File cachedFile = diskCache.get(versions.getDataCacheKey(cacheKey));
+            final File nextFile = diskCache.get(nextKey);
+            if (cachedFile != null && nextFile != null && contentEquals(cachedFile, nextFile)) {
+                // Same image, keep showing the decoded one.
+                diskCache.delete(nextKey);
+                return;
+            }
+            versions.invalidate(Collections.singleton(cacheKey));
+        } catch (IOException ignored) {
+            // Offline, keep showing the cached image.
+        } finally {
+            if (response != null) {
+                response.close();
+            }
+        }
+    }
+
+    private static boolean contentEquals(File a, File b) throws IOException {
+        if (a.length() != b.length()) {
+            return false;
+        }
+        InputStream inA = null;
+        InputStream inB = null;
+        try {
+            inA = new BufferedInputStream(new FileInputStream(a), BUFFER_SIZE);
+            inB = new BufferedInputStream(new FileInputStream(b), BUFFER_SIZE);
+            int read;
+            while ((read = inA.read()) != -1) {
+                if (read != inB.read()) {
+                    return false;
+                }
+            }
+            return inB.read() == -1;
+        } finally {
+            closeQuietly(inA);
+            closeQuietly(inB);
+        }
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
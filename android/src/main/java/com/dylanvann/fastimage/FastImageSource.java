@@ -19,6 +19,10 @@ public class FastImageSource extends ImageSource {
     private static final String LOCAL_FILE_SCHEME = "file";
     private Headers mHeaders;
     private Uri mUri;
+    private final double mWidth;
+    private final double mHeight;
+    @Nullable
+    private final String mCacheKey;
 
     public static boolean isBase64Uri(Uri uri) {
         return DATA_SCHEME.equals(uri.getScheme());
@@ -49,7 +53,18 @@ public class FastImageSource extends ImageSource {
     }
 
     public FastImageSource(Context context, String source, double width, double height, @Nullable Headers headers) {
+        this(context, source, width, height, headers, null);
+    }
+
+    /**
+     * @param cacheKey the key remote images are cached by instead of their url, see
+     *                 {@link FastImageCacheKeys}.
+     */
+    public FastImageSource(Context context, String source, double width, double height, @Nullable Headers headers, @Nullable String cacheKey) {
         super(context, source, width, height);
+        mWidth = width;
+        mHeight = height;
+        mCacheKey = cacheKey;
         mHeaders = headers == null ? Headers.DEFAULT : headers;
         mUri = super.getUri();
 
@@ -102,11 +117,34 @@ public class FastImageSource extends ImageSource {
         return mUri;
     }
 
+    /**
+     * Whether the source declares the size it will be displayed at, in which case the image is
+     * decoded at that size instead of waiting for the view to be measured.
+     */
+    public boolean hasExplicitSize() {
+        return mWidth > 0 && mHeight > 0;
+    }
+
+    /**
+     * @return the declared width in dp, or 0 if not set.
+     */
+    public double getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * @return the declared height in dp, or 0 if not set.
+     */
+    public double getHeight() {
+        return mHeight;
+    }
+
     public Headers getHeaders() {
         return mHeaders;
     }
 
     public GlideUrl getGlideUrl() {
-        return new GlideUrl(getUri().toString(), getHeaders());
+        final String url = getUri().toString();
+        return new FastImageGlideUrl(url, getHeaders(), FastImageCacheKeys.getCacheKey(url, getHeaders().getHeaders(), mCacheKey));
     }
 }
@@ -0,0 +1,198 @@
+package com.dylanvann.fastimage;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.os.Build;
+import android.telephony.TelephonyManager;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.uimanager.PixelUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Picks the variant of a source's srcSet to load, from the width of each variant in pixels.
+ * <p>
+ * The smallest variant at least as wide as the view is picked, or the widest one if none is. On a
+ * metered or slow connection the next smaller variant is picked instead, fewer bytes matter more
+ * than a sharp image there. That needs the ACCESS_NETWORK_STATE permission, which the library leaves
+ * for the app to request. A wider variant that was loaded already is picked over downloading a
+ * narrower one, it is likely still cached and scaling it down costs less than a download.
+ */
+final class FastImageSourceSet {
+    private static final String SRC_SET = "srcSet";
+    private static final int MAX_LOADED_URLS = 256;
+    // About the bandwidth of 2G.
+    private static final int SLOW_BANDWIDTH_KBPS = 250;
+
+    // The urls of the images loaded since launch, most recent last.
+    private static final Map<String, Boolean> LOADED_URLS = Collections.synchronizedMap(
+            new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > MAX_LOADED_URLS;
+                }
+            });
+
+    private FastImageSourceSet() {
+    }
+
+    static boolean hasSourceSet(@Nullable ReadableMap source) {
+        return source != null
+                && source.hasKey(SRC_SET)
+                && source.getType(SRC_SET) == ReadableType.Array
+                && source.getArray(SRC_SET).size() > 0;
+    }
+
+    /**
+     * @return the width in pixels the image is displayed at: the width of the source if it has one,
+     * otherwise the width of the view, 0 until the view is laid out.
+     */
+    static int getTargetWidth(FastImageViewWithUrl view, ReadableMap source) {
+        if (source.hasKey("width") && !source.isNull("width")) {
+            return Math.round(PixelUtil.toPixelFromDIP(source.getDouble("width")));
+        }
+        return view.getWidth();
+    }
+
+    /**
+     * @return the source with the uri of the variant to load, the other options of the source apply
+     * to every variant. The source itself if no variant has both a uri and a width.
+     */
+    static ReadableMap pick(Context context, ReadableMap source, int targetWidth) {
+        final List<Variant> variants = getVariants(source.getArray(SRC_SET));
+        if (variants.isEmpty()) {
+            return source;
+        }
+        final Variant picked = pick(variants, targetWidth, isConstrainedNetwork(context), LOADED_URLS.keySet());
+
+        final HashMap<String, Object> map = source.toHashMap();
+        map.remove(SRC_SET);
+        map.put("uri", picked.uri);
+        return Arguments.makeNativeMap(map);
+    }
+
+    /**
+     * @param variants   at least one variant, narrowest first.
+     * @param loadedUrls the urls of the images that were loaded already.
+     * @return the variant to load, see the class comment.
+     */
+    static Variant pick(List<Variant> variants, int targetWidth, boolean isConstrainedNetwork, Collection<String> loadedUrls) {
+        int picked = variants.size() - 1;
+        for (int i = 0; i < variants.size(); i++) {
+            if (variants.get(i).width >= targetWidth) {
+                picked = i;
+                break;
+            }
+        }
+        if (picked > 0 && isConstrainedNetwork) {
+            picked--;
+        }
+        for (int i = picked + 1; i < variants.size(); i++) {
+            if (loadedUrls.contains(variants.get(i).uri)) {
+                picked = i;
+                break;
+            }
+        }
+        return variants.get(picked);
+    }
+
+    /**
+     * Remembers that the image of the url was loaded, so it is picked over narrower variants.
+     */
+    static void onLoaded(String url) {
+        LOADED_URLS.put(url, Boolean.TRUE);
+    }
+
+    /**
+     * @return the variants with a uri and a width, narrowest first.
+     */
+    private static List<Variant> getVariants(ReadableArray srcSet) {
+        final List<Variant> variants = new ArrayList<>(srcSet.size());
+        for (int i = 0; i < srcSet.size(); i++) {
+            if (srcSet.getType(i) != ReadableType.Map) {
+                continue;
+            }
+            final ReadableMap variant = srcSet.getMap(i);
+            if (variant.hasKey("uri") && !variant.isNull("uri") && variant.hasKey("width") && !variant.isNull("width")) {
+                variants.add(new Variant(variant.getString("uri"), variant.getDouble("width")));
+            }
+        }
+        Collections.sort(variants, new Comparator<Variant>() {
+            @Override
+            public int compare(Variant a, Variant b) {
+                return Double.compare(a.width, b.width);
+            }
+        });
+        return variants;
+    }
+
+    private static boolean isConstrainedNetwork(Context context) {
+        final ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager == null) {
+            return false;
+        }
+        try {
+            if (connectivityManager.isActiveNetworkMetered()) {
+                return true;
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                final Network network = connectivityManager.getActiveNetwork();
+                final NetworkCapabilities capabilities = network != null ? connectivityManager.getNetworkCapabilities(network) : null;
+                if (capabilities == null) {
+                    return false;
+                }
+                final int bandwidth = capabilities.getLinkDownstreamBandwidthKbps();
+                return bandwidth > 0 && bandwidth < SLOW_BANDWIDTH_KBPS;
+            }
+            return isActiveNetwork2G(connectivityManager);
+        } catch (SecurityException e) {
+            // Without the network state permission every network is assumed to be fast.
+            return false;
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static boolean isActiveNetwork2G(ConnectivityManager connectivityManager) {
+        final NetworkInfo network = connectivityManager.getActiveNetworkInfo();
+        return network != null && network.getType() == ConnectivityManager.TYPE_MOBILE && is2G(network.getSubtype());
+    }
+
+    private static boolean is2G(int networkType) {
+        switch (networkType) {
+            case TelephonyManager.NETWORK_TYPE_GPRS:
+            case TelephonyManager.NETWORK_TYPE_EDGE:
+            case TelephonyManager.NETWORK_TYPE_CDMA:
+            case TelephonyManager.NETWORK_TYPE_1xRTT:
+            case TelephonyManager.NETWORK_TYPE_IDEN:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    static final class Variant {
+        final String uri;
+        final double width;
+
+        Variant(String uri, double width) {
+            this.uri = uri;
+            this.width = width;
+        }
+    }
+}
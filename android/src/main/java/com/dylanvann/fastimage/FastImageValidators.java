@@ -0,0 +1,256 @@
+package com.dylanvann.fastimage;
+
+import android.content.Context;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nullable;
+
+/**
+ * The HTTP validators (ETag and Last-Modified) of the images that were downloaded, so an image can
+ * be revalidated with a conditional request instead of being downloaded again.
+ * <p>
+ * Validators are appended to a file as responses arrive, one tab separated line per response; the
+ * last line of a url wins when the file is read back, and a line without validators removes the
+ * url. Only the most recently used urls are kept, and the validators of images that leave the
+ * caches are removed, so the file is rewritten without the lines that no longer count once it has
+ * grown enough.
+ */
+final class FastImageValidators {
+    private static final String FILE_NAME = "fast_image_validators";
+    static final int MAX_ENTRIES = 2048;
+    // Rewrites the file once it has this many times more lines than urls.
+    static final int COMPACTION_RATIO = 4;
+
+    @Nullable
+    private static volatile FastImageValidators instance;
+
+    private final File file;
+    private final Executor executor;
+    // Least recently used first.
+    private final Map<String, Validators> validators = Collections.synchronizedMap(
+            new LinkedHashMap<String, Validators>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Validators> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            });
+    private final ConcurrentLinkedQueue<String> pendingUrls = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean isFlushScheduled = new AtomicBoolean();
+    // Guarded by this.
+    private boolean isLoaded;
+
+    private final Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            isFlushScheduled.set(false);
+            flush();
+        }
+    };
+
+    FastImageValidators(File file, Executor executor) {
+        this.file = file;
+        this.executor = executor;
+    }
+
+    static FastImageValidators get(Context context) {
+        if (instance == null) {
+            synchronized (FastImageValidators.class) {
+                if (instance == null) {
+                    instance = new FastImageValidators(
+                            new File(context.getApplicationContext().getCacheDir(), FILE_NAME),
+                            FastImageExecutors.io()
+                    );
+                }
+            }
+        }
+        return instance;
+    }
+
+    static final class Validators {
+        @Nullable
+        final String eTag;
+        @Nullable
+        final String lastModified;
+
+        Validators(@Nullable String eTag, @Nullable String lastModified) {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Called on OkHttp threads for every response from the network. A response without validators
+     * removes the ones of the image it replaces.
+     *
+     * @param url the cache key of the image, see {@link FastImageCacheKeys}.
+     */
+    void record(String url, @Nullable String eTag, @Nullable String lastModified) {
+        if (eTag == null && lastModified == null) {
+            if (validators.remove(url) != null) {
+                scheduleFlush(url);
+            }
+            return;
+        }
+        validators.put(url, new Validators(eTag, lastModified));
+        scheduleFlush(url);
+    }
+
+    /**
+     * Removes the validators of images that left the caches. Can be called from any thread.
+     *
+     * @param urls the cache keys of the images.
+     */
+    void remove(Collection<String> urls) {
+        for (String url : urls) {
+            // Also written when not loaded yet, the line removes the url from the file.
+            validators.remove(url);
+            scheduleFlush(url);
+        }
+    }
+
+    /**
+     * Removes all validators, to be called on a background thread.
+     */
+    synchronized void clear() {
+        isLoaded = true;
+        validators.clear();
+        pendingUrls.clear();
+        file.delete();
+    }
+
+    /**
+     * Reads the file the first time, so it should be called on a background thread.
+     */
+    @Nullable
+    Validators get(String url) {
+        load();
+        return validators.get(url);
+    }
+
+    private void scheduleFlush(String url) {
+        pendingUrls.add(url);
+        if (isFlushScheduled.compareAndSet(false, true)) {
+            executor.execute(flush);
+        }
+    }
+
+    private synchronized void load() {
+        if (isLoaded) {
+            return;
+        }
+        isLoaded = true;
+        if (!file.exists()) {
+            return;
+        }
+        // In the order the lines were written, a url moves to the end each time it is written.
+        final Map<String, Validators> read = new LinkedHashMap<>();
+        int lines = 0;
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new FileReader(file));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] parts = line.split("\t", -1);
+                if (parts.length != 3) {
+                    continue;
+                }
+                lines++;
+                read.remove(parts[0]);
+                if (!parts[1].isEmpty() || !parts[2].isEmpty()) {
+                    read.put(parts[0], new Validators(emptyToNull(parts[1]), emptyToNull(parts[2])));
+                }
+            }
+        } catch (IOException ignored) {
+            // The validators that could be read are kept.
+        } finally {
+            closeQuietly(reader);
+        }
+        synchronized (validators) {
+            // Responses recorded since launch are newer than the file, they stay the most recent.
+            final Map<String, Validators> recorded = new LinkedHashMap<>(validators);
+            validators.clear();
+            validators.putAll(read);
+            validators.putAll(recorded);
+        }
+        if (lines > Math.max(validators.size(), 1) * COMPACTION_RATIO) {
+            final List<String> urls;
+            synchronized (validators) {
+                urls = new ArrayList<>(validators.keySet());
+            }
+            write(urls, false);
+        }
+    }
+
+    /**
+     * Appends the validators recorded since the last flush to the file, done in the background
+     * after {@link #record}. The file isn't read for that.
+     */
+    synchronized void flush() {
+        final List<String> urls = new ArrayList<>();
+        String url;
+        while ((url = pendingUrls.poll()) != null) {
+            urls.add(url);
+        }
+        if (!urls.isEmpty()) {
+            write(urls, true);
+        }
+    }
+
+    private void write(Iterable<String> urls, boolean append) {
+        BufferedWriter writer = null;
+        try {
+            writer = new BufferedWriter(new FileWriter(file, append));
+            for (String url : urls) {
+                final Validators value = validators.get(url);
+                if (value == null && !append) {
+                    continue;
+                }
+                writer.write(url);
+                writer.write('\t');
+                writer.write(value != null ? nullToEmpty(value.eTag) : "");
+                writer.write('\t');
+                writer.write(value != null ? nullToEmpty(value.lastModified) : "");
+                writer.newLine();
+            }
+        } catch (IOException ignored) {
+            // Images without validators are downloaded again when revalidated.
+        } finally {
+            closeQuietly(writer);
+        }
+    }
+
+    private static String nullToEmpty(@Nullable String string) {
+        return string != null ? string : "";
+    }
+
+    @Nullable
+    private static String emptyToNull(String string) {
+        return string.isEmpty() ? null : string;
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -6,21 +6,27 @@ import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.media.Image;
 import android.net.Uri;
+import android.os.Build;
 import android.util.Log;
 import android.widget.ImageView;
 import android.widget.ImageView.ScaleType;
 
 import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.DecodeFormat;
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.load.model.GlideUrl;
 import com.bumptech.glide.load.model.Headers;
 import com.bumptech.glide.load.model.LazyHeaders;
+import com.bumptech.glide.load.resource.bitmap.DownsampleStrategy;
+import com.bumptech.glide.load.resource.bitmap.Downsampler;
 import com.bumptech.glide.request.RequestOptions;
 import com.bumptech.glide.signature.ApplicationVersionSignature;
 import com.facebook.react.bridge.JSApplicationIllegalArgumentException;
 import com.facebook.react.bridge.NoSuchKeyException;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.uimanager.PixelUtil;
 import com.facebook.react.views.imagehelper.ImageSource;
 
 import java.io.File;
@@ -41,6 +47,7 @@ class FastImageViewConverter {
                 put("immutable", FastImageCacheControl.IMMUTABLE);
                 put("web", FastImageCacheControl.WEB);
                 put("cacheOnly", FastImageCacheControl.CACHE_ONLY);
+                put("staleWhileRevalidate", FastImageCacheControl.STALE_WHILE_REVALIDATE);
             }};
 
     private static final Map<String, Priority> FAST_IMAGE_PRIORITY_MAP =
@@ -50,6 +57,20 @@ class FastImageViewConverter {
                 put("high", Priority.HIGH);
             }};
 
+    private static final Map<String, FastImageBitmapFormat> FAST_IMAGE_BITMAP_FORMAT_MAP =
+            new HashMap<String, FastImageBitmapFormat>() {{
+                put("auto", FastImageBitmapFormat.AUTO);
+                put("rgb565", FastImageBitmapFormat.RGB_565);
+                put("argb8888", FastImageBitmapFormat.ARGB_8888);
+                put("hardware", FastImageBitmapFormat.HARDWARE);
+            }};
+
+    private static final Map<String, FastImageEventMode> FAST_IMAGE_EVENT_MODE_MAP =
+            new HashMap<String, FastImageEventMode>() {{
+                put("direct", FastImageEventMode.DIRECT);
+                put("batched", FastImageEventMode.BATCHED);
+            }};
+
     private static final Map<String, ImageView.ScaleType> FAST_IMAGE_RESIZE_MODE_MAP =
             new HashMap<String, ImageView.ScaleType>() {{
                 put("contain", ScaleType.FIT_CENTER);
@@ -60,16 +81,33 @@ class FastImageViewConverter {
     
     // Resolve the source uri to a file path that android understands.
     static FastImageSource getImageSource(Context context, ReadableMap source) {
-        return new FastImageSource(context, source.getString("uri"), getHeaders(source));
+        return new FastImageSource(
+                context,
+                source.getString("uri"),
+                getDimension(source, "width"),
+                getDimension(source, "height"),
+                getHeaders(source),
+                source.hasKey("cacheKey") && !source.isNull("cacheKey") ? source.getString("cacheKey") : null
+        );
+    }
+
+    private static double getDimension(ReadableMap source, String key) {
+        if (!source.hasKey(key) || source.isNull(key)) {
+            return 0.0d;
+        }
+        return source.getDouble(key);
     }
 
     static Headers getHeaders(ReadableMap source) {
-        Headers headers = Headers.DEFAULT;
+        final boolean usesHttpCache = getCacheControl(source) == FastImageCacheControl.WEB;
+        if (!source.hasKey("headers") && !usesHttpCache) {
+            return Headers.DEFAULT;
+        }
 
+        LazyHeaders.Builder builder = new LazyHeaders.Builder();
         if (source.hasKey("headers")) {
             ReadableMap headersMap = source.getMap("headers");
             ReadableMapKeySetIterator iterator = headersMap.keySetIterator();
-            LazyHeaders.Builder builder = new LazyHeaders.Builder();
 
             while (iterator.hasNextKey()) {
                 String header = iterator.nextKey();
@@ -77,42 +115,88 @@ class FastImageViewConverter {
 
                 builder.addHeader(header, value);
             }
-
-            headers = builder.build();
+        }
+        if (usesHttpCache) {
+            // Lets the request through OkHttp's cache, it is removed before the request is sent.
+            builder.addHeader(FastImageOkHttpProgressGlideModule.HTTP_CACHE_HEADER, "1");
         }
 
-        return headers;
+        return builder.build();
+    }
+
+    /**
+     * @return a copy of the url with the header added, which has the same cache key.
+     */
+    static GlideUrl withHeader(GlideUrl url, String name, String value) {
+        final LazyHeaders.Builder builder = new LazyHeaders.Builder();
+        for (Map.Entry<String, String> header : url.getHeaders().entrySet()) {
+            if (!FastImageGlideUrl.CACHE_KEY_HEADER.equals(header.getKey())) {
+                builder.addHeader(header.getKey(), header.getValue());
+            }
+        }
+        builder.addHeader(name, value);
+        return new FastImageGlideUrl(url.toStringUrl(), builder.build(), url.getCacheKey());
     }
 
     static RequestOptions getOptions(Context context, FastImageSource imageSource, ReadableMap source) {
+        return getOptions(context, imageSource, source, false, false);
+    }
+
+    /**
+     * @param isTinted      the image is drawn with a color filter, the automatic format policy
+     *                      will not pick hardware bitmaps for it.
+     * @param needsReadBack the pixels of the decoded image are drawn into a software canvas, which
+     *                      hardware bitmaps do not support whatever format was asked for.
+     */
+    static RequestOptions getOptions(Context context, FastImageSource imageSource, ReadableMap source, boolean isTinted, boolean needsReadBack) {
         // Get priority.
         final Priority priority = FastImageViewConverter.getPriority(source);
         // Get cache control method.
         final FastImageCacheControl cacheControl = FastImageViewConverter.getCacheControl(source);
         DiskCacheStrategy diskCacheStrategy = DiskCacheStrategy.AUTOMATIC;
         Boolean onlyFromCache = false;
-        Boolean skipMemoryCache = false;
         switch (cacheControl) {
             case WEB:
-                // If using none then OkHttp integration should be used for caching.
+                // OkHttp's cache stores the image and follows the server's cache headers. Decoded
+                // images are only kept in memory for a short while, see FastImageWebSignatures.
                 diskCacheStrategy = DiskCacheStrategy.NONE;
-                skipMemoryCache = true;
                 break;
             case CACHE_ONLY:
                 onlyFromCache = true;
                 break;
             case IMMUTABLE:
-                // Use defaults.
+            case STALE_WHILE_REVALIDATE:
+                // Use defaults. Stale images are revalidated once shown, see FastImageRevalidator.
                 break;
         }
 
         RequestOptions options = new RequestOptions()
             .diskCacheStrategy(diskCacheStrategy)
             .onlyRetrieveFromCache(onlyFromCache)
-            .skipMemoryCache(skipMemoryCache)
             .priority(priority)
-            .placeholder(TRANSPARENT_DRAWABLE);
-        
+            .placeholder(TRANSPARENT_DRAWABLE)
+            // Never decode bigger than needed, and never upscale: the image is sampled down by a
+            // power of two until it is as small as possible while still covering the target size.
+            // Scaling the rest of the way is left to the ImageView.
+            .downsample(DownsampleStrategy.AT_LEAST);
+
+        if (imageSource.hasExplicitSize()) {
+            // The source knows the size it is displayed at, so decode at that size up front. The
+            // size is part of Glide's memory cache key, so preloads with the same source hit the
+            // same entry as the view.
+            options = options.override(
+                    Math.round(PixelUtil.toPixelFromDIP(imageSource.getWidth())),
+                    Math.round(PixelUtil.toPixelFromDIP(imageSource.getHeight()))
+            );
+        }
+
+        final FastImageBitmapFormat format = FastImageViewConverter.getBitmapFormat(source);
+        if (format != null) {
+            options = applyBitmapFormat(options, format, isTinted, needsReadBack);
+        } else if (needsReadBack) {
+            options = options.disallowHardwareConfig();
+        }
+
         if (imageSource.isResource()) {
             // Every local resource (drawable) in Android has its own unique numeric id, which are
             // generated at build time. Although these ids are unique, they are not guaranteed unique
@@ -123,17 +207,102 @@ class FastImageViewConverter {
             options = options.apply(signatureOf(ApplicationVersionSignature.obtain(context)));
         }
 
+        final Object model = imageSource.getSourceForLoad();
+        if (model instanceof GlideUrl) {
+            final String cacheKey = ((GlideUrl) model).getCacheKey();
+            final FastImageCacheVersions versions = FastImageCacheVersions.get(context);
+            if (cacheControl == FastImageCacheControl.WEB) {
+                options = options.signature(FastImageWebSignatures.getSignature(cacheKey, versions.getVersion(cacheKey)));
+            } else {
+                // Invalidated images are loaded with a new signature, so the old cache entries miss.
+                final Key signature = versions.getSignature(cacheKey);
+                if (signature != null) {
+                    options = options.signature(signature);
+                }
+            }
+        }
+
         return options;                
     }
 
-    private static FastImageCacheControl getCacheControl(ReadableMap source) {
+    /**
+     * @return options for loading the original data of a remote image into the disk cache with
+     * {@code asFile()}, matching the cache entry the image is loaded from with {@code options}.
+     */
+    static RequestOptions getDataOptions(RequestOptions options) {
+        return new RequestOptions()
+                .diskCacheStrategy(DiskCacheStrategy.DATA)
+                .onlyRetrieveFromCache(options.getOnlyRetrieveFromCache())
+                .priority(options.getPriority())
+                .signature(options.getSignature());
+    }
+
+    private static RequestOptions applyBitmapFormat(RequestOptions options, FastImageBitmapFormat format, boolean isTinted, boolean needsReadBack) {
+        switch (format) {
+            case AUTO:
+                // Glide only uses RGB_565 when the image has no alpha channel (e.g. JPEG), so this
+                // halves the size of opaque images and leaves the others as ARGB_8888. On Android O
+                // and above hardware bitmaps are preferred, they keep the pixels out of the heap.
+                options = options.format(DecodeFormat.PREFER_RGB_565);
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && !isTinted && !needsReadBack) {
+                    return options.set(Downsampler.ALLOW_HARDWARE_CONFIG, true);
+                }
+                return options.disallowHardwareConfig();
+            case RGB_565:
+                return options.format(DecodeFormat.PREFER_RGB_565).disallowHardwareConfig();
+            case ARGB_8888:
+                return options.format(DecodeFormat.PREFER_ARGB_8888).disallowHardwareConfig();
+            case HARDWARE:
+                options = options.format(DecodeFormat.PREFER_ARGB_8888);
+                if (needsReadBack) {
+                    return options.disallowHardwareConfig();
+                }
+                // Ignored by Glide below Android O.
+                return options.set(Downsampler.ALLOW_HARDWARE_CONFIG, true);
+        }
+        return options;
+    }
+
+    /**
+     * Whether the decoded format of this source depends on the view being tinted.
+     */
+    static boolean usesAutomaticBitmapFormat(@Nullable ReadableMap source) {
+        return getBitmapFormat(source) == FastImageBitmapFormat.AUTO;
+    }
+
+    @Nullable
+    private static FastImageBitmapFormat getBitmapFormat(@Nullable ReadableMap source) {
+        if (source == null || !source.hasKey("format") || source.isNull("format")) {
+            // Keep Glide's default.
+            return null;
+        }
+        return getValueFromSource("format", "auto", FAST_IMAGE_BITMAP_FORMAT_MAP, source);
+    }
+
+    static FastImageCacheControl getCacheControl(ReadableMap source) {
         return getValueFromSource("cache", "immutable", FAST_IMAGE_CACHE_CONTROL_MAP, source);
     }
 
-    private static Priority getPriority(ReadableMap source) {
+    /**
+     * @return how long in milliseconds an image with the 'staleWhileRevalidate' cache control is
+     * shown from the caches before it is revalidated, 0 to revalidate it every time it is shown.
+     */
+    static long getMaxAge(ReadableMap source) {
+        if (!source.hasKey("maxAge") || source.isNull("maxAge")) {
+            return FastImageRevalidator.DEFAULT_MAX_AGE;
+        }
+        // Seconds, like the max-age of Cache-Control.
+        return Math.max(0, Math.round(source.getDouble("maxAge") * 1000));
+    }
+
+    static Priority getPriority(ReadableMap source) {
         return getValueFromSource("priority", "normal", FAST_IMAGE_PRIORITY_MAP, source);
     }
 
+    static FastImageEventMode getEventMode(@Nullable String propValue) {
+        return getValue("eventMode", "direct", FAST_IMAGE_EVENT_MODE_MAP, propValue);
+    }
+
     static ScaleType getScaleType(String propValue) {
         return getValue("resizeMode", "cover", FAST_IMAGE_RESIZE_MODE_MAP, propValue);
     }
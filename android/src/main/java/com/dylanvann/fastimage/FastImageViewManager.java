@@ -1,29 +1,41 @@
 package com.dylanvann.fastimage;
 
-import android.app.Activity;
 import android.content.Context;
-import android.content.ContextWrapper;
 import android.graphics.PorterDuff;
-import android.os.Build;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 
-import com.bumptech.glide.Glide;
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.RequestBuilder;
 import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.load.model.GlideUrl;
-import com.bumptech.glide.request.Request;
+import com.bumptech.glide.request.FutureTarget;
+import com.bumptech.glide.request.RequestOptions;
+import com.facebook.react.R;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.UiThreadUtil;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.WritableNativeMap;
 import com.facebook.react.common.MapBuilder;
+import com.facebook.react.uimanager.ReactStylesDiffMap;
 import com.facebook.react.uimanager.SimpleViewManager;
 import com.facebook.react.uimanager.ThemedReactContext;
+import com.facebook.react.uimanager.ViewManagerPropertyUpdater;
 import com.facebook.react.uimanager.annotations.ReactProp;
-import com.facebook.react.uimanager.events.RCTEventEmitter;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.List;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
 
 import javax.annotation.Nullable;
 
@@ -31,15 +43,26 @@ import static com.dylanvann.fastimage.FastImageRequestListener.REACT_ON_ERROR_EV
 import static com.dylanvann.fastimage.FastImageRequestListener.REACT_ON_LOAD_END_EVENT;
 import static com.dylanvann.fastimage.FastImageRequestListener.REACT_ON_LOAD_EVENT;
 
-class FastImageViewManager extends SimpleViewManager<FastImageViewWithUrl> implements FastImageProgressListener {
+class FastImageViewManager extends SimpleViewManager<FastImageViewWithUrl> implements FastImageProgressListener, FastImageCacheVersions.Listener, FastImageViewportTracker.Listener, FastImageViewPool.Listener {
 
     private static final String REACT_CLASS = "FastImageView";
     private static final String REACT_ON_LOAD_START_EVENT = "onFastImageLoadStart";
-    private static final String REACT_ON_PROGRESS_EVENT = "onFastImageProgress";
-    private static final Map<String, List<FastImageViewWithUrl>> VIEWS_FOR_URLS = new WeakHashMap<>();
-
+    static final String REACT_ON_PROGRESS_EVENT = "onFastImageProgress";
+    private static final FastImageViewRegistry VIEWS_FOR_URLS = new FastImageViewRegistry();
+    private static final int COMMAND_FORCE_REFRESH_IMAGE = 1;
+    private static final int COMMAND_REVALIDATE_IMAGE = 2;
+
+    // Only used on the UI thread.
+    private final Set<FastImageViewWithUrl> views = Collections.newSetFromMap(new WeakHashMap<FastImageViewWithUrl, Boolean>());
+    private boolean isListeningToInvalidations;
+    @Nullable
+    private FastImageViewportTracker viewportTracker;
+    @Nullable
+    private FastImageViewPool viewPool;
+    // Every prop but the source, unset, see #onPooled.
     @Nullable
-    private RequestManager requestManager = null;
+    private ReactStylesDiffMap defaultProps;
+    private final Handler handler = new Handler(Looper.getMainLooper());
 
     @Override
     public String getName() {
@@ -48,22 +71,156 @@ class FastImageViewManager extends SimpleViewManager<FastImageViewWithUrl> imple
 
     @Override
     protected FastImageViewWithUrl createViewInstance(ThemedReactContext reactContext) {
-        if (isValidContextForGlide(reactContext)) {
-            requestManager = Glide.with(reactContext);
+        if (!isListeningToInvalidations) {
+            isListeningToInvalidations = true;
+            FastImageCacheVersions.get(reactContext).addListener(this);
+        }
+
+        if (viewportTracker == null) {
+            final FastImageCacheConfig config = FastImageCacheConfig.load(reactContext);
+            final long gracePeriod = config.getLong(FastImageCacheConfig.OFFSCREEN_CANCEL_DELAY, FastImageViewportTracker.DEFAULT_GRACE_PERIOD);
+            final float flingVelocity = config.getLong(FastImageCacheConfig.FLING_VELOCITY, FastImageViewportTracker.DEFAULT_FLING_VELOCITY)
+                    * reactContext.getResources().getDisplayMetrics().density;
+            viewportTracker = new FastImageViewportTracker(views, this, gracePeriod, Math.max(0, flingVelocity));
+        }
+        if (viewPool == null) {
+            viewPool = new FastImageViewPool(this);
+            viewPool.registerComponentCallbacks(reactContext);
         }
 
-        return new FastImageViewWithUrl(reactContext);
+        FastImageViewWithUrl view = viewPool.acquire(reactContext);
+        if (view == null) {
+            view = new FastImageViewWithUrl(reactContext);
+            view.viewportTracker = viewportTracker;
+        }
+        views.add(view);
+        return view;
     }
 
     @ReactProp(name = "source")
     public void setSrc(FastImageViewWithUrl view, @Nullable ReadableMap source) {
+        // A pooled view keeps its image, it is shown as is if the source didn't change.
+        final boolean isShowing = view.isShowing(source);
+        if (!isShowing) {
+            // Other props of the transaction may need a reload too, e.g. the tint color.
+            view.needsReload = true;
+        }
+        view.needsLoadEvents = isShowing;
+        view.source = source;
+    }
+
+    @ReactProp(name = "thumbnailSource")
+    public void setThumbnailSource(FastImageViewWithUrl view, @Nullable ReadableMap thumbnailSource) {
+        view.thumbnailSource = thumbnailSource;
+        if (!view.isLoaded) {
+            // Only shown until the image loads.
+            view.needsReload = true;
+        }
+    }
+
+    @ReactProp(name = "tintColor", customType = "Color")
+    public void setTintColor(FastImageViewWithUrl view, @Nullable Integer color) {
+        if (color == null) {
+            view.clearColorFilter();
+        } else {
+            view.setColorFilter(color, PorterDuff.Mode.SRC_IN);
+        }
+
+        final boolean isTinted = color != null;
+        if (view.isTinted != isTinted) {
+            view.isTinted = isTinted;
+            // Tinting decides whether the automatic format may use hardware bitmaps.
+            if (FastImageViewConverter.usesAutomaticBitmapFormat(view.source)) {
+                view.needsReload = true;
+            }
+        }
+    }
+
+    @ReactProp(name = "listenerMask", defaultInt = FastImageViewWithUrl.LISTENER_ALL)
+    public void setListenerMask(FastImageViewWithUrl view, int listenerMask) {
+        final boolean listenedToProgress = view.hasListener(FastImageViewWithUrl.LISTENER_PROGRESS);
+        view.listenerMask = listenerMask;
+        final boolean listensToProgress = view.hasListener(FastImageViewWithUrl.LISTENER_PROGRESS);
+        if (listenedToProgress && !listensToProgress) {
+            unregisterView(view);
+        } else if (!listenedToProgress && listensToProgress && view.glideUrl != null) {
+            // Start forwarding progress of the image that is already loading.
+            registerView(view, view.glideUrl.getCacheKey());
+        }
+    }
+
+    @ReactProp(name = "eventMode")
+    public void setEventMode(FastImageViewWithUrl view, @Nullable String eventMode) {
+        view.eventMode = FastImageViewConverter.getEventMode(eventMode);
+    }
+
+    @ReactProp(name = "progressInterval")
+    public void setProgressInterval(FastImageViewWithUrl view, int progressInterval) {
+        view.progressInterval = Math.max(0, progressInterval);
+    }
+
+    @ReactProp(name = "resizeMode")
+    public void setResizeMode(FastImageViewWithUrl view, String resizeMode) {
+        final FastImageViewWithUrl.ScaleType scaleType = FastImageViewConverter.getScaleType(resizeMode);
+        view.setScaleType(scaleType);
+    }
+
+    @Override
+    protected void onAfterUpdateTransaction(FastImageViewWithUrl view) {
+        super.onAfterUpdateTransaction(view);
+        if (view.needsReload) {
+            view.needsReload = false;
+            view.needsLoadEvents = false;
+            loadImage(view);
+        } else if (view.needsLoadEvents) {
+            view.needsLoadEvents = false;
+            dispatchLoadEvents(view);
+        }
+    }
+
+    /**
+     * Tells JS that the image shown by a reused view loaded, as if it was loaded again.
+     */
+    private static void dispatchLoadEvents(FastImageViewWithUrl view) {
+        final Drawable drawable = view.getDrawable();
+        if (drawable == null) {
+            return;
+        }
+        if (view.hasListener(FastImageViewWithUrl.LISTENER_LOAD_START)) {
+            FastImageEventDispatcher.dispatch(view, REACT_ON_LOAD_START_EVENT, new WritableNativeMap());
+        }
+        if (view.hasListener(FastImageViewWithUrl.LISTENER_LOAD)) {
+            FastImageEventDispatcher.dispatch(view, REACT_ON_LOAD_EVENT, FastImageRequestListener.mapFromResource(drawable));
+        }
+        if (view.hasListener(FastImageViewWithUrl.LISTENER_LOAD_END)) {
+            FastImageEventDispatcher.dispatch(view, REACT_ON_LOAD_END_EVENT, new WritableNativeMap());
+        }
+    }
+
+    private void loadImage(FastImageViewWithUrl view) {
+        ReadableMap source = view.source;
+        if (FastImageSourceSet.hasSourceSet(source)) {
+            final int targetWidth = FastImageSourceSet.getTargetWidth(view, source);
+            if (targetWidth == 0) {
+                // The variant depends on the size of the view, it is loaded once laid out.
+                clearView(view);
+                view.isLoaded = false;
+                view.setImageDrawable(null);
+                if (viewportTracker != null) {
+                    viewportTracker.defer(view);
+                }
+                return;
+            }
+            source = FastImageSourceSet.pick(view.getContext(), source, targetWidth);
+        }
+        view.loadedSource = source;
         if (source == null || !source.hasKey("uri") || isNullOrEmpty(source.getString("uri"))) {
             // Cancel existing requests.
             clearView(view);
-
-            if (view.glideUrl != null) {
-                FastImageOkHttpProgressGlideModule.forget(view.glideUrl.toStringUrl());
-            }
+            unregisterView(view);
+            view.isLoading = false;
+            view.isLoaded = false;
+            view.isDeferred = false;
             // Clear the image.
             view.setImageDrawable(null);
             return;
@@ -72,21 +229,18 @@ class FastImageViewManager extends SimpleViewManager<FastImageViewWithUrl> imple
         //final GlideUrl glideUrl = FastImageViewConverter.getGlideUrl(view.getContext(), source);
         final FastImageSource imageSource = FastImageViewConverter.getImageSource(view.getContext(), source);
         if (imageSource.getUri().toString().length() == 0) {
-            ThemedReactContext context = (ThemedReactContext) view.getContext();
-            RCTEventEmitter eventEmitter = context.getJSModule(RCTEventEmitter.class);
-            int viewId = view.getId();
-            WritableMap event = new WritableNativeMap();
-            event.putString("message", "Invalid source prop:" + source);
-            eventEmitter.receiveEvent(viewId, REACT_ON_ERROR_EVENT, event);
-
-            // Cancel existing requests.
-            if (requestManager != null) {
-                requestManager.clear(view);
+            if (view.hasListener(FastImageViewWithUrl.LISTENER_ERROR)) {
+                WritableMap event = new WritableNativeMap();
+                event.putString("message", "Invalid source prop:" + source);
+                FastImageEventDispatcher.dispatch(view, REACT_ON_ERROR_EVENT, event);
             }
 
-            if (view.glideUrl != null) {
-                FastImageOkHttpProgressGlideModule.forget(view.glideUrl.toStringUrl());
-            }
+            // Cancel existing requests.
+            clearView(view);
+            unregisterView(view);
+            view.isLoading = false;
+            view.isLoaded = false;
+            view.isDeferred = false;
             // Clear the image.
             view.setImageDrawable(null);
             return;
@@ -98,68 +252,228 @@ class FastImageViewManager extends SimpleViewManager<FastImageViewWithUrl> imple
         view.glideUrl = glideUrl;
         clearView(view);
 
-        String key = glideUrl.toStringUrl();
-        FastImageOkHttpProgressGlideModule.expect(key, this);
-        List<FastImageViewWithUrl> viewsForKey = VIEWS_FOR_URLS.get(key);
-        if (viewsForKey != null && !viewsForKey.contains(view)) {
-            viewsForKey.add(view);
-        } else if (viewsForKey == null) {
-            List<FastImageViewWithUrl> newViewsForKeys = new ArrayList<>(Collections.singletonList(view));
-            VIEWS_FOR_URLS.put(key, newViewsForKeys);
+        if (viewportTracker != null && !source.hasKey("priority") && viewportTracker.waitForLayout(view)) {
+            // The priority depends on where the view is, it is loaded once laid out.
+            view.isLoading = false;
+            view.isLoaded = false;
+            view.isDeferred = false;
+            return;
+        }
+
+        // Progress is tracked by cache key, so urls that only differ in e.g. their signature share it.
+        String key = glideUrl.getCacheKey();
+        if (view.hasListener(FastImageViewWithUrl.LISTENER_PROGRESS)) {
+            registerView(view, key);
+        } else {
+            // Nobody listens to progress, don't make the network layer track it.
+            unregisterView(view);
+        }
+
+        view.lastProgressTime = 0;
+        if (view.hasListener(FastImageViewWithUrl.LISTENER_LOAD_START)) {
+            FastImageEventDispatcher.dispatch(view, REACT_ON_LOAD_START_EVENT, new WritableNativeMap());
         }
 
         ThemedReactContext context = (ThemedReactContext) view.getContext();
-        RCTEventEmitter eventEmitter = context.getJSModule(RCTEventEmitter.class);
-        int viewId = view.getId();
-        eventEmitter.receiveEvent(viewId, REACT_ON_LOAD_START_EVENT, new WritableNativeMap());
+        Object model = imageSource.getSourceForLoad();
+        if (model instanceof GlideUrl) {
+            // Lets the disk cache be cleared by URL.
+            FastImageCacheIndex.get(context).record((GlideUrl) model);
+        }
 
+        RequestOptions options = FastImageViewConverter.getOptions(context, imageSource, source, view.isTinted, false);
+        final long maxAge = FastImageViewConverter.getCacheControl(source) == FastImageCacheControl.STALE_WHILE_REVALIDATE
+                ? FastImageViewConverter.getMaxAge(source)
+                : FastImageRequestListener.NO_REVALIDATION;
+        if (viewportTracker != null) {
+            final Priority requested = source.hasKey("priority") ? FastImageViewConverter.getPriority(source) : null;
+            options = options.priority(viewportTracker.getPriority(view, requested));
+        }
+        if (view.skipCaches) {
+            view.skipCaches = false;
+            options = options.skipMemoryCache(true).diskCacheStrategy(DiskCacheStrategy.NONE);
+            if (model instanceof GlideUrl) {
+                // Makes OkHttp revalidate the response it cached for a 'web' image.
+                model = FastImageViewConverter.withHeader((GlideUrl) model, "Cache-Control", "no-cache");
+            }
+        }
+
+        view.isLoaded = false;
+        view.isDeferred = false;
+        view.offscreenSince = 0;
+        final RequestManager requestManager = FastImageRequestManagers.get(context);
+        view.requestManager = requestManager;
         if (requestManager != null) {
-            requestManager
+            if (view.requestListener == null) {
+                view.requestListener = new FastImageRequestListener(key, maxAge);
+            } else {
+                view.requestListener.update(key, maxAge);
+            }
+            RequestBuilder<Drawable> request = requestManager
                     // This will make this work for remote and local images. e.g.
                     //    - file:///
                     //    - content://
                     //    - res:/
                     //    - android.resource://
                     //    - data:image/png;base64
-                    .load(imageSource.getSourceForLoad())
+                    .load(model)
                     .dontTransform()
-                    .apply(FastImageViewConverter.getOptions(context, imageSource, source))
-                    .listener(new FastImageRequestListener(key))
-                    .into(view);
+                    .apply(options);
+            if (viewportTracker != null && viewportTracker.isFlinging() && !isInMemoryCache(requestManager, request, view)) {
+                // It is loaded once the fling is over.
+                viewportTracker.defer(view);
+                return;
+            }
+            view.isLoading = true;
+            final RequestBuilder<Drawable> thumbnail = getThumbnailRequest(requestManager, view, options.getPriority());
+            if (thumbnail != null) {
+                // Shown while the image loads, unless the image is ready first.
+                request = request.thumbnail(thumbnail);
+            }
+            request
+                    .listener(view.requestListener)
+                    .into(view.target);
+            if (view.isLoading && viewportTracker != null) {
+                // Not in the memory cache, keep an eye on where the view goes while it loads.
+                viewportTracker.onLoadStarted();
+            }
         }
     }
 
-    @ReactProp(name = "tintColor", customType = "Color")
-    public void setTintColor(FastImageViewWithUrl view, @Nullable Integer color) {
-        if (color == null) {
-            view.clearColorFilter();
-        } else {
-            view.setColorFilter(color, PorterDuff.Mode.SRC_IN);
-        }
-    }
+    @Override
+    public void onDropViewInstance(final FastImageViewWithUrl view) {
+        unregisterView(view);
+        views.remove(view);
+        // A view is dropped along with its parent while still in it, it is pooled once out of it.
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (viewPool == null || !viewPool.release(view)) {
+                    // This will cancel existing requests.
+                    clearView(view);
+                }
+            }
+        });
 
-    @ReactProp(name = "resizeMode")
-    public void setResizeMode(FastImageViewWithUrl view, String resizeMode) {
-        final FastImageViewWithUrl.ScaleType scaleType = FastImageViewConverter.getScaleType(resizeMode);
-        view.setScaleType(scaleType);
+        super.onDropViewInstance(view);
     }
 
     @Override
-    public void onDropViewInstance(FastImageViewWithUrl view) {
-        // This will cancel existing requests.
+    public void onEvicted(FastImageViewWithUrl view) {
         clearView(view);
+        view.isLoaded = false;
+    }
 
-        if (view.glideUrl != null) {
-            final String key = view.glideUrl.toString();
-            FastImageOkHttpProgressGlideModule.forget(key);
-            List<FastImageViewWithUrl> viewsForKey = VIEWS_FOR_URLS.get(key);
-            if (viewsForKey != null) {
-                viewsForKey.remove(view);
-                if (viewsForKey.size() == 0) VIEWS_FOR_URLS.remove(key);
+    /**
+     * Sets every prop but the source back to its default, as React does for the props a mount
+     * doesn't set, so a reused view carries nothing over from its previous mount: no opacity,
+     * transform, background, z-index, test id or accessibility props.
+     */
+    @Override
+    public void onPooled(FastImageViewWithUrl view) {
+        if (defaultProps == null) {
+            final JavaOnlyMap props = new JavaOnlyMap();
+            for (String name : getNativeProps().keySet()) {
+                if (!"source".equals(name)) {
+                    props.putNull(name);
+                }
             }
+            defaultProps = new ReactStylesDiffMap(props);
         }
+        // Not updateProperties, which would end the transaction and load the image.
+        ViewManagerPropertyUpdater.updateProps(this, view, defaultProps);
+        // The setters of these ignore null, leaving the previous value.
+        view.setTag(R.id.accessibility_role, null);
+        view.setTag(R.id.accessibility_state, null);
+        view.setTag(R.id.accessibility_actions, null);
+        view.setTag(R.id.accessibility_value, null);
+        // The default listener mask listens to progress again.
+        unregisterView(view);
+        view.resetProps();
+    }
 
-        super.onDropViewInstance(view);
+    @Override
+    public Map<String, Integer> getCommandsMap() {
+        return MapBuilder.of(
+                "forceRefreshImage", COMMAND_FORCE_REFRESH_IMAGE,
+                "revalidateImage", COMMAND_REVALIDATE_IMAGE
+        );
+    }
+
+    @Override
+    public void receiveCommand(FastImageViewWithUrl view, int commandId, @Nullable ReadableArray args) {
+        if (view.loadedSource == null || view.glideUrl == null) {
+            return;
+        }
+        final FastImageSource imageSource = FastImageViewConverter.getImageSource(view.getContext(), view.loadedSource);
+        final boolean isCachedRemotely = imageSource.getSourceForLoad() instanceof GlideUrl
+                && FastImageViewConverter.getCacheControl(view.loadedSource) != FastImageCacheControl.WEB;
+        switch (commandId) {
+            case COMMAND_FORCE_REFRESH_IMAGE:
+                if (isCachedRemotely) {
+                    // Invalidating gives the image new cache keys, so it is downloaded again and
+                    // replaces the old image for every view showing it.
+                    final Set<String> cacheKeys = Collections.singleton(view.glideUrl.getCacheKey());
+                    final Context context = view.getContext().getApplicationContext();
+                    FastImageExecutors.io().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            FastImageCacheVersions.get(context).invalidate(cacheKeys);
+                            FastImageValidators.get(context).remove(cacheKeys);
+                        }
+                    });
+                } else {
+                    view.skipCaches = true;
+                    loadImage(view);
+                }
+                break;
+            case COMMAND_REVALIDATE_IMAGE:
+                if (isCachedRemotely) {
+                    FastImageRevalidator.revalidate(view.getContext(), view.glideUrl);
+                } else {
+                    // Local images and images cached by OkHttp are revalidated by reloading them.
+                    view.skipCaches = true;
+                    loadImage(view);
+                }
+                break;
+        }
+    }
+
+    @Override
+    public void onInvalidated(final Collection<String> cacheKeys) {
+        UiThreadUtil.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                final Set<String> invalidatedKeys = new HashSet<>(cacheKeys);
+                if (viewPool != null) {
+                    viewPool.evict(invalidatedKeys);
+                }
+                // Copied, loading may touch the set.
+                for (FastImageViewWithUrl view : new ArrayList<>(views)) {
+                    if (view.glideUrl != null && invalidatedKeys.contains(view.glideUrl.getCacheKey())) {
+                        // Loads the new version of the image.
+                        loadImage(view);
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onOffscreen(FastImageViewWithUrl view) {
+        // Cancels the download and decode, the image is loaded again once the view is back.
+        clearView(view);
+        view.isLoading = false;
+    }
+
+    @Override
+    public void onBackOnScreen(FastImageViewWithUrl view) {
+        loadImage(view);
+    }
+
+    @Override
+    public void onFirstLayout(FastImageViewWithUrl view) {
+        loadImage(view);
     }
 
     @Override
@@ -175,17 +489,26 @@ class FastImageViewManager extends SimpleViewManager<FastImageViewWithUrl> imple
 
     @Override
     public void onProgress(String key, long bytesRead, long expectedLength) {
-        List<FastImageViewWithUrl> viewsForKey = VIEWS_FOR_URLS.get(key);
-        if (viewsForKey != null) {
-            for (FastImageViewWithUrl view : viewsForKey) {
-                WritableMap event = new WritableNativeMap();
-                event.putInt("loaded", (int) bytesRead);
-                event.putInt("total", (int) expectedLength);
-                ThemedReactContext context = (ThemedReactContext) view.getContext();
-                RCTEventEmitter eventEmitter = context.getJSModule(RCTEventEmitter.class);
-                int viewId = view.getId();
-                eventEmitter.receiveEvent(viewId, REACT_ON_PROGRESS_EVENT, event);
+        final boolean isComplete = bytesRead == expectedLength;
+        final long now = SystemClock.uptimeMillis();
+        boolean hasClearedViews = false;
+        for (FastImageViewRegistry.ViewRef ref : VIEWS_FOR_URLS.getViews(key)) {
+            final FastImageViewWithUrl view = ref.get();
+            if (view == null) {
+                hasClearedViews = true;
+                continue;
+            }
+            if (!isComplete && view.progressInterval > 0 && now - view.lastProgressTime < view.progressInterval) {
+                continue;
             }
+            view.lastProgressTime = now;
+            WritableMap event = new WritableNativeMap();
+            event.putInt("loaded", (int) bytesRead);
+            event.putInt("total", (int) expectedLength);
+            FastImageEventDispatcher.dispatch(view, REACT_ON_PROGRESS_EVENT, event);
+        }
+        if (hasClearedViews) {
+            VIEWS_FOR_URLS.prune(key);
         }
     }
 
@@ -194,56 +517,102 @@ class FastImageViewManager extends SimpleViewManager<FastImageViewWithUrl> imple
         return 0.5f;
     }
 
-    private boolean isNullOrEmpty(final String url) {
-        return url == null || url.trim().isEmpty();
-    }
-
-
-    private static boolean isValidContextForGlide(final Context context) {
-        Activity activity = getActivityFromContext(context);
-
-        if (activity == null) {
+    /**
+     * Glide can't be asked whether an image is in its memory cache, so the request is made at the
+     * size the view shows it, allowed to use the memory cache only. It completes right away on a
+     * hit, and otherwise fails without reading the disk or the network.
+     *
+     * @return true if the image of the request is in the memory cache.
+     */
+    private static boolean isInMemoryCache(RequestManager requestManager, RequestBuilder<Drawable> request, FastImageViewWithUrl view) {
+        final int width = view.getWidth() - view.getPaddingLeft() - view.getPaddingRight();
+        final int height = view.getHeight() - view.getPaddingTop() - view.getPaddingBottom();
+        if (!request.isValidOverride() && (width <= 0 || height <= 0)) {
             return false;
         }
-
-        return !isActivityDestroyed(activity);
+        final FutureTarget<Drawable> probe = request
+                .clone()
+                .onlyRetrieveFromCache(true)
+                .diskCacheStrategy(DiskCacheStrategy.NONE)
+                .submit(Math.max(width, 1), Math.max(height, 1));
+        boolean isCached = false;
+        if (probe.isDone()) {
+            try {
+                isCached = probe.get() != null;
+            } catch (ExecutionException e) {
+                // Not in the memory cache.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // The image goes back to the memory cache, where the request of the view finds it.
+        requestManager.clear(probe);
+        return isCached;
     }
 
-    private static Activity getActivityFromContext(final Context context) {
-        if (context instanceof Activity) {
-            return (Activity) context;
+    /**
+     * @return the request of the thumbnail source, or null if there is none.
+     */
+    @Nullable
+    private RequestBuilder<Drawable> getThumbnailRequest(RequestManager requestManager, FastImageViewWithUrl view, Priority priority) {
+        final ReadableMap source = view.thumbnailSource;
+        if (source == null || !source.hasKey("uri") || isNullOrEmpty(source.getString("uri"))) {
+            return null;
         }
+        final Context context = view.getContext();
+        final FastImageSource imageSource = FastImageViewConverter.getImageSource(context, source);
+        if (imageSource.getUri().toString().length() == 0) {
+            return null;
+        }
+        final Object model = imageSource.getSourceForLoad();
+        if (model instanceof GlideUrl) {
+            FastImageCacheIndex.get(context).record((GlideUrl) model);
+        }
+        final RequestOptions options = FastImageViewConverter.getOptions(context, imageSource, source, view.isTinted, false)
+                // The thumbnail is small, it should arrive well before the image.
+                .priority(getThumbnailPriority(priority));
+        return requestManager
+                .load(model)
+                .dontTransform()
+                .apply(options);
+    }
 
-        if (context instanceof ThemedReactContext) {
-            final Context baseContext = ((ThemedReactContext) context).getBaseContext();
-            if (baseContext instanceof Activity) {
-                return (Activity) baseContext;
-            }
-
-            if (baseContext instanceof ContextWrapper) {
-                final ContextWrapper contextWrapper = (ContextWrapper) baseContext;
-                final Context wrapperBaseContext = contextWrapper.getBaseContext();
-                if (wrapperBaseContext instanceof Activity) {
-                    return (Activity) wrapperBaseContext;
-                }
-            }
+    private static Priority getThumbnailPriority(Priority priority) {
+        switch (priority) {
+            case LOW:
+                return Priority.NORMAL;
+            case NORMAL:
+                return Priority.HIGH;
+            default:
+                return Priority.IMMEDIATE;
         }
+    }
 
-        return null;
+    private boolean isNullOrEmpty(final String url) {
+        return url == null || url.trim().isEmpty();
     }
 
-    private static boolean isActivityDestroyed(Activity activity) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
-            return activity.isDestroyed() || activity.isFinishing();
-        } else {
-            return activity.isDestroyed() || activity.isFinishing() || activity.isChangingConfigurations();
+    private void clearView(FastImageViewWithUrl view) {
+        // Glide keeps the request in a tag with its own id, view.getTag() is always null. Clearing a
+        // view without a request is a no-op.
+        if (view != null && view.requestManager != null) {
+            view.requestManager.clear(view);
         }
+    }
 
+    private void registerView(FastImageViewWithUrl view, String key) {
+        if (!key.equals(view.registryRef.registeredKey)) {
+            unregisterView(view);
+            VIEWS_FOR_URLS.register(key, view.registryRef);
+        }
+        FastImageOkHttpProgressGlideModule.expect(key, this);
     }
 
-    private void clearView(FastImageViewWithUrl view) {
-        if (requestManager != null && view != null && view.getTag() != null && view.getTag() instanceof Request) {
-            requestManager.clear(view);
+    private static void unregisterView(FastImageViewWithUrl view) {
+        final String key = VIEWS_FOR_URLS.unregister(view.registryRef);
+        // Other views may still be waiting for progress on the same url.
+        if (key != null && !VIEWS_FOR_URLS.hasViews(key)) {
+            FastImageOkHttpProgressGlideModule.forget(key);
         }
     }
 }
@@ -1,38 +1,66 @@
 package com.dylanvann.fastimage;
 
 import android.app.Activity;
-import java.io.File;
-import java.io.IOException;
-import java.io.FileOutputStream;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+import com.bumptech.glide.load.engine.cache.MemoryCache;
 import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.request.FutureTarget;
+import com.bumptech.glide.request.RequestOptions;
+import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
-import com.facebook.react.views.imagehelper.ImageSource;
-
-import com.bumptech.glide.request.RequestListener;
-import android.graphics.drawable.Drawable;
-import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import com.bumptech.glide.request.target.Target;
-import com.bumptech.glide.load.DataSource;
-import com.bumptech.glide.load.engine.GlideException;
-import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.UiThreadUtil;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Nullable;
 
 class FastImageViewModule extends ReactContextBaseJavaModule {
 
     private static final String REACT_CLASS = "FastImageView";
     private static final String ERROR_LOAD_FAILED = "ERROR_LOAD_FAILED";
+    private static final long COPY_CHUNK_SIZE = 64 * 1024;
+
+    private final FastImagePreloader preloader;
+    private final FastImageMemoryTrimmer memoryTrimmer;
 
     FastImageViewModule(ReactApplicationContext reactContext) {
         super(reactContext);
+        preloader = new FastImagePreloader(reactContext);
+        FastImageCacheVersions.preload(reactContext);
+        memoryTrimmer = new FastImageMemoryTrimmer(reactContext);
+        memoryTrimmer.register();
+        reactContext.addLifecycleEventListener(memoryTrimmer);
     }
 
     @Override
@@ -40,144 +68,454 @@ class FastImageViewModule extends ReactContextBaseJavaModule {
         return REACT_CLASS;
     }
 
+    @Override
+    public void onCatalystInstanceDestroy() {
+        preloader.shutdown();
+        memoryTrimmer.unregister();
+        getReactApplicationContext().removeLifecycleEventListener(memoryTrimmer);
+    }
+
+    /**
+     * Saves the cache configuration. Resolves with true if Glide isn't initialized yet and the
+     * configuration applies right away, otherwise it applies from the next launch. Resolves with
+     * false when the app excludes FastImageGlideModule, the configuration never applies then.
+     */
     @ReactMethod
-    public void preload(final ReadableArray sources) {
-        final Activity activity = getCurrentActivity();
-        if (activity == null) return;
-        activity.runOnUiThread(new Runnable() {
+    public void configure(final ReadableMap config, final Promise promise) {
+        FastImageCacheConfig.save(getReactApplicationContext(), config);
+        promise.resolve(FastImageGlideModule.isInstalled() && !FastImageGlideModule.isApplied());
+    }
+
+    /**
+     * Sets the rules remote images are cached by, they apply to the images loaded from now on.
+     */
+    @ReactMethod
+    public void setCacheKeyRules(@Nullable final ReadableMap rules) {
+        FastImageCacheKeys.setRules(rules);
+    }
+
+    @ReactMethod
+    public void preload(final ReadableArray sources, @Nullable final ReadableMap options, final Promise promise) {
+        final String tag = options != null && options.hasKey("tag") ? options.getString("tag") : null;
+        preloader.preload(sources, tag, promise);
+    }
+
+    @ReactMethod
+    public void cancelPreload(final String tag) {
+        preloader.cancel(tag);
+    }
+
+    /**
+     * Resolves with whether each source is in the disk cache, and the path of the cached file. The
+     * images are never downloaded or decoded.
+     */
+    @ReactMethod
+    public void getCachePaths(final ReadableArray sources, final Promise promise) {
+        final Context context = getReactApplicationContext();
+        FastImageExecutors.io().execute(new Runnable() {
             @Override
             public void run() {
-                for (int i = 0; i < sources.size(); i++) {
+                final RequestManager requestManager = Glide.with(context);
+                final int size = sources.size();
+                final String[] uris = new String[size];
+                final String[] paths = new String[size];
+                final List<FutureTarget<File>> targets = new ArrayList<>(size);
+                // Start all lookups first so Glide's disk cache threads check them in parallel.
+                for (int i = 0; i < size; i++) {
                     final ReadableMap source = sources.getMap(i);
-                    final FastImageSource imageSource = FastImageViewConverter.getImageSource(activity, source);
-
-                    Glide
-                            .with(activity.getApplicationContext())
-                            // This will make this work for remote and local images. e.g.
-                            //    - file:///
-                            //    - content://
-                            //    - res:/
-                            //    - android.resource://
-                            //    - data:image/png;base64
-                            .load(
-                                    imageSource.isBase64Resource() ? imageSource.getSource() :
-                                    imageSource.isResource() ? imageSource.getUri() : imageSource.getGlideUrl()
-                            )
-                            .apply(FastImageViewConverter.getOptions(activity, imageSource, source))
-                            .preload();
+                    uris[i] = source.hasKey("uri") ? source.getString("uri") : null;
+                    FutureTarget<File> target = null;
+                    try {
+                        final FastImageSource imageSource = FastImageViewConverter.getImageSource(context, source);
+                        final Object model = imageSource.getSourceForLoad();
+                        if (model instanceof GlideUrl) {
+                            final RequestOptions options = FastImageViewConverter.getOptions(context, imageSource, source);
+                            target = requestManager
+                                    .asFile()
+                                    .load(model)
+                                    .apply(FastImageViewConverter.getDataOptions(options).onlyRetrieveFromCache(true))
+                                    .submit();
+                        } else if (imageSource.isLocalFile()) {
+                            // Already on disk, there is nothing to cache.
+                            paths[i] = imageSource.getUri().getPath();
+                        }
+                    } catch (RuntimeException ignored) {
+                        // Invalid sources are not cached.
+                    }
+                    targets.add(target);
+                }
+
+                final WritableArray results = Arguments.createArray();
+                for (int i = 0; i < size; i++) {
+                    final FutureTarget<File> target = targets.get(i);
+                    String path = paths[i];
+                    if (target != null) {
+                        try {
+                            path = target.get().getAbsolutePath();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        } catch (ExecutionException e) {
+                            // Not in the cache.
+                        } finally {
+                            requestManager.clear(target);
+                        }
+                    }
+                    final WritableMap result = Arguments.createMap();
+                    result.putString("uri", uris[i]);
+                    result.putBoolean("cached", path != null);
+                    if (path != null) {
+                        result.putString("path", path);
+                        result.putDouble("bytes", new File(path).length());
+                    }
+                    results.pushMap(result);
                 }
+                promise.resolve(results);
             }
         });
     }
 
-
-	@ReactMethod
+    @ReactMethod
     public void preloadDimension(final ReadableMap source, final Promise promise) {
-        final Activity activity = getCurrentActivity();
-        if (activity == null) return;
-
-        activity.runOnUiThread(new Runnable() {
+        final Context context = getReactApplicationContext();
+        FastImageExecutors.io().execute(new Runnable() {
             @Override
             public void run() {
-                final FastImageSource imageSource = FastImageViewConverter.getImageSource(activity, source);
-                final GlideUrl glideUrl = imageSource.getGlideUrl();
-
-                if (glideUrl == null) {
-                    promise.resolve(null);
+                final String saveToFile = source.hasKey("saveToFile") && !source.isNull("saveToFile")
+                        ? source.getString("saveToFile")
+                        : null;
+                final WritableMap params;
+                try {
+                    params = preloadDimension(context, source, isNullOrEmpty(saveToFile) ? null : new File(saveToFile));
+                } catch (Exception e) {
+                    promise.reject(ERROR_LOAD_FAILED, e);
                     return;
                 }
+                promise.resolve(params);
+            }
+        });
+    }
+
+    /**
+     * Runs on a background thread. When saving to a file the original bytes are copied, the image is
+     * only decoded and encoded again as a JPEG when the source is not backed by a file or stream.
+     */
+    private static WritableMap preloadDimension(Context context, ReadableMap source, @Nullable File saveToFile) throws Exception {
+        final FastImageSource imageSource = FastImageViewConverter.getImageSource(context, source);
+        final Object model = imageSource.getSourceForLoad();
+        final WritableMap params = Arguments.createMap();
+        final RequestManager requestManager = Glide.with(context);
+
+        if (model instanceof GlideUrl || imageSource.isLocalFile()) {
+            final File file;
+            FutureTarget<File> fileTarget = null;
+            if (model instanceof GlideUrl) {
+                FastImageCacheIndex.get(context).record((GlideUrl) model);
+                // Downloads into the disk cache, or finds the file already there, without decoding.
+                final RequestOptions options = FastImageViewConverter.getOptions(context, imageSource, source);
+                fileTarget = requestManager
+                        .asFile()
+                        .load(model)
+                        .apply(FastImageViewConverter.getDataOptions(options))
+                        .submit();
+                file = fileTarget.get();
+            } else {
+                file = new File(imageSource.getUri().getPath());
+            }
+            try {
+                putDimensions(params, file);
+                if (saveToFile != null && copyFile(file, saveToFile)) {
+                    params.putString("path", saveToFile.getAbsolutePath());
+                }
+            } finally {
+                if (fileTarget != null) {
+                    requestManager.clear(fileTarget);
+                }
+            }
+            return params;
+        }
+
+        if (imageSource.isContentUri()) {
+            final ContentResolver contentResolver = context.getContentResolver();
+            final Uri uri = imageSource.getUri();
+            final BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            final InputStream boundsStream = contentResolver.openInputStream(uri);
+            if (boundsStream == null) {
+                throw new IOException("Could not open " + uri);
+            }
+            try {
+                BitmapFactory.decodeStream(boundsStream, null, options);
+            } finally {
+                closeQuietly(boundsStream);
+            }
+            params.putInt("width", options.outWidth);
+            params.putInt("height", options.outHeight);
+            if (saveToFile != null && copyStream(contentResolver.openInputStream(uri), saveToFile)) {
+                params.putString("path", saveToFile.getAbsolutePath());
+            }
+            return params;
+        }
+
+        // Base64 and resources have no file to copy, decode them in software so they can be drawn
+        // into a bitmap.
+        final FutureTarget<Drawable> drawableTarget = requestManager
+                .load(model)
+                .apply(FastImageViewConverter.getOptions(context, imageSource, source, false, saveToFile != null))
+                .submit();
+        try {
+            final Drawable resource = drawableTarget.get();
+            params.putInt("width", resource.getIntrinsicWidth());
+            params.putInt("height", resource.getIntrinsicHeight());
+            if (saveToFile != null && encodeToFile(resource, saveToFile)) {
+                params.putString("path", saveToFile.getAbsolutePath());
+            }
+        } finally {
+            requestManager.clear(drawableTarget);
+        }
+        return params;
+    }
+
+    private static void putDimensions(WritableMap params, File file) {
+        // Only reads the header of the image.
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+        params.putInt("width", options.outWidth);
+        params.putInt("height", options.outHeight);
+    }
+
+    private static boolean prepareDirectory(File file) {
+        final File dir = file.getParentFile();
+        return dir == null || dir.exists() || dir.mkdirs();
+    }
+
+    /**
+     * Copies the file with a channel transfer, which lets the kernel move the bytes without copying
+     * them through the Java heap.
+     */
+    private static boolean copyFile(File from, File to) {
+        if (!prepareDirectory(to)) {
+            return false;
+        }
+        FileInputStream in = null;
+        FileOutputStream out = null;
+        try {
+            in = new FileInputStream(from);
+            out = new FileOutputStream(to);
+            final FileChannel inChannel = in.getChannel();
+            final FileChannel outChannel = out.getChannel();
+            final long size = inChannel.size();
+            long position = 0;
+            while (position < size) {
+                position += inChannel.transferTo(position, size - position, outChannel);
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            closeQuietly(in);
+            closeQuietly(out);
+        }
+    }
+
+    private static boolean copyStream(@Nullable InputStream in, File to) {
+        if (in == null) {
+            return false;
+        }
+        if (!prepareDirectory(to)) {
+            closeQuietly(in);
+            return false;
+        }
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(to);
+            final ReadableByteChannel inChannel = Channels.newChannel(in);
+            final FileChannel outChannel = out.getChannel();
+            long position = 0;
+            long transferred;
+            while ((transferred = outChannel.transferFrom(inChannel, position, COPY_CHUNK_SIZE)) > 0) {
+                position += transferred;
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            closeQuietly(in);
+            closeQuietly(out);
+        }
+    }
+
+    private static boolean encodeToFile(Drawable resource, File to) {
+        if (!prepareDirectory(to)) {
+            return false;
+        }
+        // https://stackoverflow.com/questions/3035692/how-to-convert-a-drawable-to-a-bitmap
+        final Bitmap bm = Bitmap.createBitmap(resource.getIntrinsicWidth(), resource.getIntrinsicHeight(), Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(bm);
+        // The drawable may be shared with views, draw a copy so its bounds are left alone.
+        final Drawable drawable = resource.getConstantState() != null
+                ? resource.getConstantState().newDrawable().mutate()
+                : resource;
+        drawable.setBounds(0, 0, canvas.getWidth(), canvas.getHeight());
+        drawable.draw(canvas);
+
+        FileOutputStream fos = null;
+        try {
+            fos = new FileOutputStream(to);
+            return bm.compress(Bitmap.CompressFormat.JPEG, 100, fos);
+        } catch (IOException e) {
+            return false;
+        } finally {
+            closeQuietly(fos);
+            bm.recycle();
+        }
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static boolean isNullOrEmpty(@Nullable final String string) {
+        return string == null || string.trim().isEmpty();
+    }
+
+    /**
+     * Invalidates the sources, so they are loaded again instead of from the caches. Mounted views
+     * showing them reload. Resolves with the number of images invalidated.
+     */
+    @ReactMethod
+    public void invalidate(final ReadableArray sources, final Promise promise) {
+        final Context context = getReactApplicationContext();
+        FastImageExecutors.io().execute(new Runnable() {
+            @Override
+            public void run() {
+                final Set<String> cacheKeys = new HashSet<>();
+                for (int i = 0; i < sources.size(); i++) {
+                    try {
+                        final Object model = FastImageViewConverter.getImageSource(context, sources.getMap(i)).getSourceForLoad();
+                        if (model instanceof GlideUrl) {
+                            cacheKeys.add(((GlideUrl) model).getCacheKey());
+                        }
+                    } catch (RuntimeException ignored) {
+                        // Invalid sources have nothing cached.
+                    }
+                }
+                promise.resolve(invalidate(context, cacheKeys));
+            }
+        });
+    }
+
+    /**
+     * Invalidates every image loaded from a URL that starts with the prefix.
+     */
+    @ReactMethod
+    public void invalidatePrefix(final String prefix, final Promise promise) {
+        final Context context = getReactApplicationContext();
+        FastImageExecutors.io().execute(new Runnable() {
+            @Override
+            public void run() {
+                promise.resolve(invalidate(context, FastImageCacheIndex.get(context).getKeysByUrlPrefix(prefix)));
+            }
+        });
+    }
+
+    /**
+     * Runs on a background thread.
+     *
+     * @return the number of images invalidated.
+     */
+    private static int invalidate(Context context, Set<String> cacheKeys) {
+        if (cacheKeys.isEmpty()) {
+            return 0;
+        }
+        FastImageCacheVersions.get(context).invalidate(cacheKeys);
+        // The images are downloaded again, with new validators.
+        FastImageValidators.get(context).remove(cacheKeys);
+        return cacheKeys.size();
+    }
 
-                Glide
-					.with(activity.getApplicationContext())
-					.load(
-						imageSource.isBase64Resource() ? imageSource.getSource() :
-						imageSource.isLocalFile() ? source.getString("uri") :
-						imageSource.isResource() ? imageSource.getUri() : 
-						imageSource.getGlideUrl()
-					)
-					.apply(FastImageViewConverter.getOptions(activity, imageSource,  source))
-					.listener(new RequestListener<Drawable>() {
-						@Override
-						public boolean onLoadFailed(GlideException e, Object model, Target<Drawable> target, boolean isFirstResource) {
-							promise.reject(ERROR_LOAD_FAILED, e);
-							return false;
-						}
-
-						@Override
-						public boolean onResourceReady(Drawable resource, Object model, Target<Drawable> target, DataSource dataSource, boolean isFirstResource) {
-
-							WritableMap params = Arguments.createMap();
-							params.putInt("width", resource.getIntrinsicWidth());
-							params.putInt("height", resource.getIntrinsicHeight()); 
-
-
-							String saveToFile = String.valueOf(source.getString("saveToFile"));
-							if (saveToFile.isEmpty()) {
-								promise.resolve(params);
-								return false;
-							}
-							
-
-
-							// https://stackoverflow.com/questions/10174399/how-can-i-write-a-drawable-resource-to-a-file
-							String fileName = saveToFile.substring(saveToFile.lastIndexOf("/") + 1, saveToFile.length());
-							String pathFolder = saveToFile.substring(0, saveToFile.length() - fileName.length());
-
-
-							// 1 - создам нужную папку
-							File dir = new File(pathFolder);
-							if (!dir.exists()) {
-								boolean doSave = dir.mkdirs();
-
-								if (!doSave) {
-									promise.resolve(params);
-									return false;
-								}
-							}
-
-
-							// 2 - создам Bitmap объект
-							// https://stackoverflow.com/questions/3035692/how-to-convert-a-drawable-to-a-bitmap
-							Bitmap bm = Bitmap.createBitmap(resource.getIntrinsicWidth(), resource.getIntrinsicHeight(), Bitmap.Config.ARGB_8888);
-							Canvas canvas = new Canvas(bm);
-							resource.setBounds(0, 0, canvas.getWidth(), canvas.getHeight());
-							resource.draw(canvas);
-
-
-							// 3 - записываем в Bitmap файл
-							File imageFile = new File(dir, fileName);
-							FileOutputStream fos = null;
-							try {
-								fos = new FileOutputStream(imageFile);
-								bm.compress(Bitmap.CompressFormat.JPEG, 100, fos);
-								fos.close();
-								
-								params.putString("path", pathFolder + fileName);
-								promise.resolve(params);
-								return false;
-							}
-							catch (IOException e) {
-								if (fos != null) {
-									try {
-										fos.close();
-									} catch (IOException e1) {}
-								}
-							}
-							
-						
-							// если не получилось просто не возвращаем параметр path
-							promise.resolve(params);
-							return false;
-
-						}
-					})
-					.preload();
+    /**
+     * Resolves with the timings and counts of image requests since launch, see
+     * {@link FastImageNetworkStats}.
+     */
+    @ReactMethod
+    public void getNetworkStats(final Promise promise) {
+        promise.resolve(FastImageOkHttpProgressGlideModule.getNetworkStats());
+    }
 
+    /**
+     * Resolves with the current and maximum sizes of the caches, in bytes.
+     */
+    @ReactMethod
+    public void getCacheInfo(final Promise promise) {
+        final Context context = getReactApplicationContext();
+        final int lastTrimLevel = memoryTrimmer.getLastTrimLevel();
+        FastImageExecutors.io().execute(new Runnable() {
+            @Override
+            public void run() {
+                final WritableMap info = Arguments.createMap();
+                final MemoryCache memoryCache = FastImageGlideModule.getMemoryCache();
+                if (memoryCache != null) {
+                    info.putDouble("memoryCacheSize", memoryCache.getCurrentSize());
+                    info.putDouble("memoryCacheMaxSize", memoryCache.getMaxSize());
+                    final BitmapPool bitmapPool = Glide.get(context).getBitmapPool();
+                    if (bitmapPool instanceof LruBitmapPool) {
+                        info.putDouble("bitmapPoolSize", ((LruBitmapPool) bitmapPool).getCurrentSize());
+                    }
+                    info.putDouble("bitmapPoolMaxSize", bitmapPool.getMaxSize());
+                }
+                final File directory = FastImageDiskCacheFactory.getDirectory();
+                if (directory != null) {
+                    info.putDouble("diskCacheSize", getDirectorySize(directory));
+                    info.putDouble("diskCacheMaxSize", FastImageDiskCacheFactory.getMaxSize());
+                }
+                info.putInt("trimLevel", lastTrimLevel);
+                promise.resolve(info);
             }
         });
-  	}
+    }
 
+    private static long getDirectorySize(File directory) {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        return size;
+    }
 
+    /**
+     * Pauses the image requests of the views, e.g. during a fling, see
+     * {@link FastImageRequestManagers#pause()}.
+     */
+    @ReactMethod
+    public void pauseRequests() {
+        UiThreadUtil.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                FastImageRequestManagers.pause();
+            }
+        });
+    }
+
+    @ReactMethod
+    public void resumeRequests() {
+        UiThreadUtil.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                FastImageRequestManagers.resume();
+            }
+        });
+    }
 
     @ReactMethod
     public void clearMemoryCache(final Promise promise) {
@@ -196,15 +534,29 @@ class FastImageViewModule extends ReactContextBaseJavaModule {
         });
     }
 
+    /**
+     * Clears the disk cache in the background and resolves with the number of files and bytes
+     * removed. Without options everything is removed, otherwise only the entries that match them,
+     * see {@link FastImageDiskCacheCleaner#clear}.
+     */
     @ReactMethod
-    public void clearDiskCache(Promise promise) {
-        final Activity activity = getCurrentActivity();
-        if (activity == null) {
-            promise.resolve(null);
-            return;
-        }
-
-        Glide.get(activity.getApplicationContext()).clearDiskCache();
-        promise.resolve(null);
+    public void clearDiskCache(@Nullable final ReadableMap options, final Promise promise) {
+        final FastImageDiskCacheCleaner cleaner = new FastImageDiskCacheCleaner(getReactApplicationContext());
+        FastImageExecutors.io().execute(new Runnable() {
+            @Override
+            public void run() {
+                final FastImageDiskCacheCleaner.Result result;
+                if (options == null) {
+                    result = cleaner.clearAll();
+                } else {
+                    result = cleaner.clear(
+                            options.hasKey("urlPrefix") ? options.getString("urlPrefix") : null,
+                            options.hasKey("olderThan") ? (long) options.getDouble("olderThan") : -1,
+                            options.hasKey("maxSize") ? (long) options.getDouble("maxSize") : -1
+                    );
+                }
+                promise.resolve(result.toMap());
+            }
+        });
     }
 }
@@ -0,0 +1,153 @@
+package com.dylanvann.fastimage;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import androidx.annotation.NonNull;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+
+import javax.annotation.Nullable;
+
+/**
+ * Views dropped by React, kept to be used again for the next image mounted in the same root view.
+ * <p>
+ * A virtualized list unmounts and mounts cells as it scrolls, so instead of allocating a view, its
+ * Glide target and listener for every cell, dropped views are reused. A pooled view keeps its image,
+ * so when it is reused for the same source the image is shown right away without a placeholder.
+ * Pooled images can't be evicted from Glide's memory cache, so the pool is small and is emptied when
+ * the system is low on memory or the app goes to the background.
+ * <p>
+ * Only used on the UI thread.
+ */
+final class FastImageViewPool {
+    interface Listener {
+        /**
+         * The view left the pool without being reused, its request should be cleared.
+         */
+        void onEvicted(FastImageViewWithUrl view);
+
+        /**
+         * The view entered the pool, the props of its last mount should be reset.
+         */
+        void onPooled(FastImageViewWithUrl view);
+    }
+
+    private static final int MAX_SIZE = 24;
+
+    private final ArrayDeque<FastImageViewWithUrl> views = new ArrayDeque<>();
+    private final Listener listener;
+
+    FastImageViewPool(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Empties the pool when the system is low on memory. The application only holds the pool
+     * weakly, the pool and its views go away with the view manager of their React instance.
+     */
+    void registerComponentCallbacks(Context context) {
+        final Context application = context.getApplicationContext();
+        application.registerComponentCallbacks(new MemoryCallbacks(application, this));
+    }
+
+    /**
+     * Views of other contexts are evicted, their root view is most likely gone.
+     *
+     * @return a pooled view created for the context, or null if there is none.
+     */
+    @Nullable
+    FastImageViewWithUrl acquire(Context context) {
+        final Iterator<FastImageViewWithUrl> iterator = views.descendingIterator();
+        while (iterator.hasNext()) {
+            final FastImageViewWithUrl view = iterator.next();
+            iterator.remove();
+            if (view.getContext() == context) {
+                return view;
+            }
+            listener.onEvicted(view);
+        }
+        return null;
+    }
+
+    /**
+     * @return false if the view can't be pooled, its request should be cleared then.
+     */
+    boolean release(FastImageViewWithUrl view) {
+        if (view.getParent() != null || view.isLoading || view.isDeferred) {
+            // Still in a hierarchy, or has no image worth keeping.
+            return false;
+        }
+        listener.onPooled(view);
+        views.addLast(view);
+        if (views.size() > MAX_SIZE) {
+            listener.onEvicted(views.removeFirst());
+        }
+        return true;
+    }
+
+    /**
+     * Evicts the pooled views showing one of the images.
+     */
+    void evict(Collection<String> cacheKeys) {
+        final Iterator<FastImageViewWithUrl> iterator = views.iterator();
+        while (iterator.hasNext()) {
+            final FastImageViewWithUrl view = iterator.next();
+            if (view.glideUrl != null && cacheKeys.contains(view.glideUrl.getCacheKey())) {
+                iterator.remove();
+                listener.onEvicted(view);
+            }
+        }
+    }
+
+    void clear() {
+        FastImageViewWithUrl view;
+        while ((view = views.pollFirst()) != null) {
+            listener.onEvicted(view);
+        }
+    }
+
+    private static final class MemoryCallbacks implements ComponentCallbacks2 {
+        private final Context application;
+        private final WeakReference<FastImageViewPool> pool;
+
+        MemoryCallbacks(Context application, FastImageViewPool pool) {
+            this.application = application;
+            this.pool = new WeakReference<>(pool);
+        }
+
+        @Override
+        public void onTrimMemory(int level) {
+            final FastImageViewPool current = getPool();
+            if (current != null && level >= TRIM_MEMORY_RUNNING_LOW) {
+                current.clear();
+            }
+        }
+
+        @Override
+        public void onLowMemory() {
+            final FastImageViewPool current = getPool();
+            if (current != null) {
+                current.clear();
+            }
+        }
+
+        @Override
+        public void onConfigurationChanged(@NonNull Configuration newConfig) {
+            getPool();
+        }
+
+        @Nullable
+        private FastImageViewPool getPool() {
+            final FastImageViewPool current = pool.get();
+            if (current == null) {
+                // The React instance is gone.
+                application.unregisterComponentCallbacks(this);
+            }
+            return current;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.dylanvann.fastimage;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Keeps track of the views showing each url so that progress for a url can be forwarded to them.
+ * <p>
+ * Views are registered and unregistered on the UI thread while progress is read from OkHttp
+ * threads. Views are only weakly referenced, through the {@link ViewRef} each view owns, and each
+ * ref remembers the key it was registered under so it can always be removed from the right entry.
+ */
+final class FastImageViewRegistry {
+    private static final ViewRef[] NO_VIEWS = new ViewRef[0];
+
+    private final ConcurrentHashMap<String, Views> viewsForKeys = new ConcurrentHashMap<>();
+
+    static final class ViewRef extends WeakReference<FastImageViewWithUrl> {
+        // Only read and written on the UI thread.
+        @Nullable
+        String registeredKey;
+
+        ViewRef(@Nullable FastImageViewWithUrl view) {
+            super(view);
+        }
+    }
+
+    private static final class Views {
+        // Copied on write so readers can iterate without locking or allocating. A url is rarely
+        // shown by more than a couple of views at a time so the copies stay tiny.
+        volatile ViewRef[] refs = NO_VIEWS;
+        boolean removed;
+    }
+
+    /**
+     * Registers the view of the ref under the key, moving it out of the entry it was registered
+     * under before.
+     */
+    void register(String key, ViewRef ref) {
+        if (key.equals(ref.registeredKey)) {
+            return;
+        }
+        unregister(ref);
+
+        while (true) {
+            Views views = viewsForKeys.get(key);
+            if (views == null) {
+                final Views newViews = new Views();
+                views = viewsForKeys.putIfAbsent(key, newViews);
+                if (views == null) {
+                    views = newViews;
+                }
+            }
+            synchronized (views) {
+                if (views.removed) {
+                    // Lost a race with the last view of this key being removed, try again.
+                    continue;
+                }
+                final ViewRef[] refs = views.refs;
+                final ViewRef[] newRefs = new ViewRef[refs.length + 1];
+                System.arraycopy(refs, 0, newRefs, 0, refs.length);
+                newRefs[refs.length] = ref;
+                views.refs = newRefs;
+            }
+            ref.registeredKey = key;
+            return;
+        }
+    }
+
+    /**
+     * Removes the view of the ref from the entry it is registered under, if any.
+     *
+     * @return the key the view was registered under.
+     */
+    @Nullable
+    String unregister(ViewRef ref) {
+        final String key = ref.registeredKey;
+        if (key == null) {
+            return null;
+        }
+        ref.registeredKey = null;
+        remove(key, ref);
+        return key;
+    }
+
+    boolean hasViews(String key) {
+        return viewsForKeys.containsKey(key);
+    }
+
+    /**
+     * @return the views registered under the key. The array is shared and must not be modified,
+     * references to views that have been garbage collected may be cleared.
+     */
+    ViewRef[] getViews(String key) {
+        final Views views = viewsForKeys.get(key);
+        return views == null ? NO_VIEWS : views.refs;
+    }
+
+    /**
+     * Removes references to views that were garbage collected without being dropped.
+     */
+    void prune(String key) {
+        for (ViewRef ref : getViews(key)) {
+            if (ref.get() == null) {
+                remove(key, ref);
+            }
+        }
+    }
+
+    private void remove(String key, ViewRef ref) {
+        final Views views = viewsForKeys.get(key);
+        if (views == null) {
+            return;
+        }
+        synchronized (views) {
+            final ViewRef[] refs = views.refs;
+            int index = -1;
+            for (int i = 0; i < refs.length; i++) {
+                if (refs[i] == ref) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index == -1) {
+                return;
+            }
+            if (refs.length == 1) {
+                views.refs = NO_VIEWS;
+                views.removed = true;
+                viewsForKeys.remove(key, views);
+                return;
+            }
+            final ViewRef[] newRefs = new ViewRef[refs.length - 1];
+            System.arraycopy(refs, 0, newRefs, 0, index);
+            System.arraycopy(refs, index + 1, newRefs, index, refs.length - index - 1);
+            views.refs = newRefs;
+        }
+    }
+}
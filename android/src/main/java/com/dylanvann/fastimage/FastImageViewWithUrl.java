@@ -1,15 +1,132 @@
 package com.dylanvann.fastimage;
 
 import android.content.Context;
+import android.view.ViewTreeObserver;
 
 import androidx.appcompat.widget.AppCompatImageView;
 
+import com.bumptech.glide.RequestManager;
 import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.request.target.DrawableImageViewTarget;
+import com.facebook.react.bridge.ReadableMap;
+
+import javax.annotation.Nullable;
 
 class FastImageViewWithUrl extends AppCompatImageView {
+    // Bits of the listenerMask prop, one per JS event handler. Must match src/index.tsx.
+    static final int LISTENER_LOAD_START = 1;
+    static final int LISTENER_PROGRESS = 1 << 1;
+    static final int LISTENER_LOAD = 1 << 2;
+    static final int LISTENER_ERROR = 1 << 3;
+    static final int LISTENER_LOAD_END = 1 << 4;
+    static final int LISTENER_ALL = LISTENER_LOAD_START | LISTENER_PROGRESS | LISTENER_LOAD | LISTENER_ERROR | LISTENER_LOAD_END;
+
     public GlideUrl glideUrl;
 
+    // The request manager of the last load, which clears it, see FastImageRequestManagers.
+    @Nullable
+    RequestManager requestManager;
+    // Reused by every load of the view, see FastImageViewPool.
+    final DrawableImageViewTarget target = new DrawableImageViewTarget(this);
+    @Nullable
+    FastImageRequestListener requestListener;
+
+    final FastImageViewRegistry.ViewRef registryRef = new FastImageViewRegistry.ViewRef(this);
+
+    // Props the image request depends on. They are collected while props are being set and the
+    // request is made once all of them are known, see FastImageViewManager#onAfterUpdateTransaction.
+    @Nullable
+    ReadableMap source;
+    // The source of the last load, with the variant of its srcSet picked, see FastImageSourceSet.
+    @Nullable
+    ReadableMap loadedSource;
+    // Shown while the source loads.
+    @Nullable
+    ReadableMap thumbnailSource;
+    boolean isTinted;
+    boolean needsReload;
+    // A reused view shows the image of its source already, JS is told it loaded.
+    boolean needsLoadEvents;
+    // The next load skips the memory and disk caches, see FastImageViewManager#receiveCommand.
+    boolean skipCaches;
+
+    // Where the view is relative to the screen, see FastImageViewportTracker.
+    @Nullable
+    FastImageViewportTracker viewportTracker;
+    boolean isAttached;
+    // Set while the load waits for the view to be laid out.
+    @Nullable
+    ViewTreeObserver.OnPreDrawListener layoutListener;
+    boolean isLoading;
+    // The image of the source is shown.
+    boolean isLoaded;
+    // The load was cancelled while off screen, it is made again once the view is back.
+    boolean isDeferred;
+    long offscreenSince;
+
+    int listenerMask = LISTENER_ALL;
+    FastImageEventMode eventMode = FastImageEventMode.DIRECT;
+    long progressInterval;
+    long lastProgressTime;
+
     public FastImageViewWithUrl(Context context) {
         super(context);
     }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        isAttached = true;
+        if (viewportTracker != null) {
+            viewportTracker.onAttached(this);
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (isDeferred && viewportTracker != null) {
+            // A srcSet variant may be waiting for the size.
+            viewportTracker.onLaidOut();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        isAttached = false;
+        if (viewportTracker != null) {
+            viewportTracker.onDetached(this);
+        }
+        super.onDetachedFromWindow();
+    }
+
+    /**
+     * @return true if the view shows the image of the source, loading it again is then pointless.
+     */
+    boolean isShowing(@Nullable ReadableMap source) {
+        return isLoaded && !isLoading && !isDeferred && this.source != null && source != null
+                && this.source.toHashMap().equals(source.toHashMap());
+    }
+
+    /**
+     * Resets the state the props left, once they are back to their defaults and the view is pooled.
+     * The source and the image are kept, in case the view is reused for the same one.
+     */
+    void resetProps() {
+        thumbnailSource = null;
+        clearColorFilter();
+        isTinted = false;
+        needsReload = false;
+        needsLoadEvents = false;
+        skipCaches = false;
+        offscreenSince = 0;
+        listenerMask = LISTENER_ALL;
+        eventMode = FastImageEventMode.DIRECT;
+        progressInterval = 0;
+        lastProgressTime = 0;
+    }
+
+    boolean hasListener(int listener) {
+        return (listenerMask & listener) != 0;
+    }
 }
@@ -0,0 +1,335 @@
+package com.dylanvann.fastimage;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import androidx.core.view.ViewCompat;
+
+import com.bumptech.glide.Priority;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Tracks where views that are loading an image are relative to the screen.
+ * <p>
+ * Requests start with a priority that depends on where the view is: high on screen, normal within a
+ * screen of it, low further away. Requests of views that are detached or further than a screen away
+ * for longer than the grace period are cancelled, so a fast scroll doesn't keep downloading and
+ * decoding images that were scrolled past. They are loaded again once their view comes back near
+ * the screen. The grace period keeps a quick scroll back from restarting downloads. Where a view
+ * that isn't attached and laid out yet will be is unknown, so its load waits until right before it
+ * is first drawn, see {@link #waitForLayout(FastImageViewWithUrl)}.
+ * <p>
+ * While a list scrolls faster than the fling velocity, images that aren't in the memory cache are
+ * not loaded, so a fling doesn't download and decode images it is only passing by. Once the scroll
+ * slows down or stops, those near the screen load, visible ones first. The speed of the scroll is
+ * measured from how far a view moves in the window, so any scrolling parent is followed.
+ * <p>
+ * Only used on the UI thread.
+ */
+final class FastImageViewportTracker implements ViewTreeObserver.OnScrollChangedListener {
+    static final long DEFAULT_GRACE_PERIOD = 1000;
+    // In dp per second.
+    static final long DEFAULT_FLING_VELOCITY = 2500;
+    // Without scroll events for this long, the scroll stopped.
+    private static final long SETTLE_DELAY = 100;
+
+    private enum Zone {
+        VISIBLE,
+        NEAR,
+        FAR,
+        DETACHED,
+        // Not laid out yet.
+        UNKNOWN
+    }
+
+    interface Listener {
+        /**
+         * The view was off screen for longer than the grace period while loading.
+         */
+        void onOffscreen(FastImageViewWithUrl view);
+
+        /**
+         * The view whose load was cancelled came back near the screen.
+         */
+        void onBackOnScreen(FastImageViewWithUrl view);
+
+        /**
+         * The view waiting for its layout is about to be drawn for the first time.
+         */
+        void onFirstLayout(FastImageViewWithUrl view);
+    }
+
+    private final Collection<FastImageViewWithUrl> views;
+    private final Listener listener;
+    private final long gracePeriod;
+    // In pixels per second, 0 if loads never wait for a fling to end.
+    private final float flingVelocity;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final int[] location = new int[2];
+    // The trees of the windows the views were attached to, e.g. the activity's and a modal's. A tree
+    // goes away with its window, and its listeners with it.
+    private final Set<ViewTreeObserver> observedTrees = Collections.newSetFromMap(new WeakHashMap<ViewTreeObserver, Boolean>());
+    private boolean isCheckScheduled;
+    private boolean isFlinging;
+    // The view the scroll speed is measured with, and where it was.
+    @Nullable
+    private WeakReference<FastImageViewWithUrl> sampleView;
+    private int sampleX;
+    private int sampleY;
+    private long sampleTime;
+
+    private final Runnable check = new Runnable() {
+        @Override
+        public void run() {
+            isCheckScheduled = false;
+            check();
+        }
+    };
+
+    private final Runnable settle = new Runnable() {
+        @Override
+        public void run() {
+            onFlingEnd();
+        }
+    };
+
+    /**
+     * @param views         the views of the view manager, which are checked on scroll.
+     * @param flingVelocity in pixels per second, 0 to load during flings.
+     */
+    FastImageViewportTracker(Collection<FastImageViewWithUrl> views, Listener listener, long gracePeriod, float flingVelocity) {
+        this.views = views;
+        this.listener = listener;
+        this.gracePeriod = gracePeriod;
+        this.flingVelocity = flingVelocity;
+    }
+
+    /**
+     * @return true if loads that aren't served from the memory cache should wait for the end of
+     * the fling, see {@link #defer(FastImageViewWithUrl)}.
+     */
+    boolean isFlinging() {
+        return isFlinging;
+    }
+
+    /**
+     * The load of the view was cancelled during a fling, it is made again once the scroll slows
+     * down if the view is near the screen.
+     */
+    void defer(FastImageViewWithUrl view) {
+        view.isLoading = false;
+        view.isDeferred = true;
+        view.offscreenSince = 0;
+    }
+
+    /**
+     * Delays the load of a view until it is attached and laid out, the load then gets the priority
+     * of where the view is. Glide waits for the size of the view anyway, and as the load starts
+     * before the first draw an image in the memory cache is still shown in the first frame.
+     *
+     * @return true if the load waits, {@link Listener#onFirstLayout} is called when the view is ready.
+     */
+    boolean waitForLayout(final FastImageViewWithUrl view) {
+        if (view.isAttached && ViewCompat.isLaidOut(view)) {
+            return false;
+        }
+        if (view.layoutListener == null) {
+            view.layoutListener = new ViewTreeObserver.OnPreDrawListener() {
+                @Override
+                public boolean onPreDraw() {
+                    view.getViewTreeObserver().removeOnPreDrawListener(this);
+                    view.layoutListener = null;
+                    listener.onFirstLayout(view);
+                    return true;
+                }
+            };
+            // Listeners added before the view is attached move to the window once it is.
+            view.getViewTreeObserver().addOnPreDrawListener(view.layoutListener);
+        }
+        return true;
+    }
+
+    /**
+     * @param requested the priority the source asked for, or null to pick one from the zone.
+     */
+    Priority getPriority(FastImageViewWithUrl view, @Nullable Priority requested) {
+        if (requested != null) {
+            return requested;
+        }
+        switch (getZone(view)) {
+            case VISIBLE:
+                return Priority.HIGH;
+            case FAR:
+            case DETACHED:
+                return Priority.LOW;
+            default:
+                return Priority.NORMAL;
+        }
+    }
+
+    void onLoadStarted() {
+        scheduleCheck(0);
+    }
+
+    void onAttached(FastImageViewWithUrl view) {
+        final ViewTreeObserver tree = view.getViewTreeObserver();
+        if (observedTrees.add(tree)) {
+            tree.addOnScrollChangedListener(this);
+        }
+        scheduleCheck(0);
+    }
+
+    void onDetached(FastImageViewWithUrl view) {
+        if (view.isLoading) {
+            scheduleCheck(0);
+        }
+    }
+
+    void onLaidOut() {
+        scheduleCheck(0);
+    }
+
+    @Override
+    public void onScrollChanged() {
+        if (flingVelocity > 0) {
+            measureScroll();
+        }
+        scheduleCheck(0);
+    }
+
+    private void measureScroll() {
+        final long now = SystemClock.uptimeMillis();
+        FastImageViewWithUrl view = sampleView != null ? sampleView.get() : null;
+        if (view == null || !view.isAttached) {
+            view = null;
+            for (FastImageViewWithUrl candidate : views) {
+                if (candidate.isAttached) {
+                    view = candidate;
+                    break;
+                }
+            }
+            if (view == null) {
+                return;
+            }
+            sampleView = new WeakReference<>(view);
+            sampleTime = 0;
+        }
+        view.getLocationInWindow(location);
+        final long elapsed = now - sampleTime;
+        if (sampleTime != 0 && elapsed > 0) {
+            final float distance = Math.max(Math.abs(location[0] - sampleX), Math.abs(location[1] - sampleY));
+            final boolean isFast = distance * 1000 / elapsed > flingVelocity;
+            if (isFast) {
+                isFlinging = true;
+            } else if (isFlinging) {
+                onFlingEnd();
+            }
+        } else if (sampleTime != 0) {
+            // Several scroll events in the same frame.
+            return;
+        }
+        sampleX = location[0];
+        sampleY = location[1];
+        sampleTime = now;
+        handler.removeCallbacks(settle);
+        if (isFlinging) {
+            handler.postDelayed(settle, SETTLE_DELAY);
+        }
+    }
+
+    private void onFlingEnd() {
+        handler.removeCallbacks(settle);
+        isFlinging = false;
+        sampleTime = 0;
+        scheduleCheck(0);
+    }
+
+    private void scheduleCheck(long delay) {
+        if (delay == 0 && isCheckScheduled) {
+            return;
+        }
+        if (delay == 0) {
+            isCheckScheduled = true;
+            handler.post(check);
+        } else {
+            handler.postDelayed(check, delay);
+        }
+    }
+
+    private void check() {
+        final long now = SystemClock.uptimeMillis();
+        long nextCheck = Long.MAX_VALUE;
+        // Back on screen, visible ones are loaded first.
+        final List<FastImageViewWithUrl> visible = new ArrayList<>();
+        final List<FastImageViewWithUrl> near = new ArrayList<>();
+        // Copied, the listener loads and clears views.
+        for (FastImageViewWithUrl view : new ArrayList<>(views)) {
+            if (!view.isLoading && !view.isDeferred) {
+                continue;
+            }
+            final Zone zone = getZone(view);
+            final boolean isOffscreen = zone == Zone.FAR || zone == Zone.DETACHED;
+            if (view.isDeferred) {
+                if (!isFlinging && zone == Zone.VISIBLE) {
+                    visible.add(view);
+                } else if (!isFlinging && zone == Zone.NEAR) {
+                    near.add(view);
+                }
+            } else if (!isOffscreen) {
+                view.offscreenSince = 0;
+            } else if (view.offscreenSince == 0) {
+                view.offscreenSince = now;
+                nextCheck = Math.min(nextCheck, now + gracePeriod);
+            } else if (now - view.offscreenSince >= gracePeriod) {
+                view.offscreenSince = 0;
+                view.isDeferred = true;
+                listener.onOffscreen(view);
+            } else {
+                nextCheck = Math.min(nextCheck, view.offscreenSince + gracePeriod);
+            }
+        }
+        visible.addAll(near);
+        for (FastImageViewWithUrl view : visible) {
+            view.isDeferred = false;
+            listener.onBackOnScreen(view);
+        }
+        if (nextCheck != Long.MAX_VALUE) {
+            scheduleCheck(Math.max(1, nextCheck - now));
+        }
+    }
+
+    private Zone getZone(FastImageViewWithUrl view) {
+        if (!view.isAttached) {
+            return Zone.DETACHED;
+        }
+        final View root = view.getRootView();
+        if (view.getWidth() == 0 || view.getHeight() == 0 || root.getWidth() == 0 || root.getHeight() == 0) {
+            return Zone.UNKNOWN;
+        }
+        view.getLocationInWindow(location);
+        final int left = location[0];
+        final int top = location[1];
+        final int right = left + view.getWidth();
+        final int bottom = top + view.getHeight();
+        if (right > 0 && bottom > 0 && left < root.getWidth() && top < root.getHeight()) {
+            return Zone.VISIBLE;
+        }
+        // Within a screen of the window, in any direction.
+        if (right > -root.getWidth() && bottom > -root.getHeight()
+                && left < 2 * root.getWidth() && top < 2 * root.getHeight()) {
+            return Zone.NEAR;
+        }
+        return Zone.FAR;
+    }
+}
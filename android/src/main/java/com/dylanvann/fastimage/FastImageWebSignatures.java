@@ -0,0 +1,56 @@
+package com.dylanvann.fastimage;
+
+import android.os.SystemClock;
+import android.util.LruCache;
+
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.signature.ObjectKey;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Signatures for images with the 'web' cache control, which limit how long their decoded images are
+ * reused from Glide's memory cache.
+ * <p>
+ * Each url keeps its signature for the time to live. After that it gets a new one, so the next load
+ * misses the memory cache and goes through OkHttp's cache, which serves or revalidates the image as
+ * the server's Cache-Control and validators ask.
+ */
+final class FastImageWebSignatures {
+    static final long DEFAULT_TIME_TO_LIVE = 60 * 1000;
+    private static final int MAX_ENTRIES = 512;
+
+    private static final AtomicLong generations = new AtomicLong();
+    private static final LruCache<String, Entry> entries = new LruCache<>(MAX_ENTRIES);
+    private static volatile long timeToLive = DEFAULT_TIME_TO_LIVE;
+
+    private FastImageWebSignatures() {
+    }
+
+    static void setTimeToLive(long timeToLiveMs) {
+        timeToLive = timeToLiveMs;
+    }
+
+    /**
+     * @param version the version of the image, see {@link FastImageCacheVersions}.
+     */
+    static Key getSignature(String cacheKey, int version) {
+        final long now = SystemClock.uptimeMillis();
+        Entry entry = entries.get(cacheKey);
+        if (entry == null || now >= entry.expiresAt) {
+            entry = new Entry(generations.incrementAndGet(), now + timeToLive);
+            entries.put(cacheKey, entry);
+        }
+        return new ObjectKey("fast-image-web-" + version + "-" + entry.generation);
+    }
+
+    private static final class Entry {
+        final long generation;
+        final long expiresAt;
+
+        Entry(long generation, long expiresAt) {
+            this.generation = generation;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
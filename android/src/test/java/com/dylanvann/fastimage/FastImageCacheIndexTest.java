@@ -0,0 +1,27 @@
+package com.dylanvann.fastimage;
+
+import com.bumptech.glide.load.engine.cache.SafeKeyGenerator;
+import com.bumptech.glide.signature.ObjectKey;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class FastImageCacheIndexTest {
+    @Test
+    public void fileNameMatchesDiskCache() {
+        // DiskLruCacheWrapper stores the first value of each entry in a file named after its key.
+        final ObjectKey key = new ObjectKey("https://example.com/a.png");
+
+        assertEquals(new SafeKeyGenerator().getSafeKey(key) + ".0", FastImageCacheIndex.getFileName(key));
+    }
+
+    @Test
+    public void fileNamesDifferByKey() {
+        assertNotEquals(
+                FastImageCacheIndex.getFileName(new ObjectKey("https://example.com/a.png")),
+                FastImageCacheIndex.getFileName(new ObjectKey("https://example.com/b.png"))
+        );
+    }
+}
@@ -0,0 +1,118 @@
+package com.dylanvann.fastimage;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import static org.junit.Assert.assertEquals;
+
+public class FastImageCacheKeysTest {
+    private static FastImageCacheKeys.Rules removing(String... names) {
+        return rules(new HashSet<>(Arrays.asList(names)), null);
+    }
+
+    private static FastImageCacheKeys.Rules keeping(String... names) {
+        return rules(Collections.<String>emptySet(), new HashSet<>(Arrays.asList(names)));
+    }
+
+    private static FastImageCacheKeys.Rules rules(Set<String> removed, @Nullable Set<String> kept) {
+        return new FastImageCacheKeys.Rules(removed, kept, Collections.<String>emptyList());
+    }
+
+    @Test
+    public void keepsUrlWithoutRules() {
+        final String url = "https://example.com/a.png?Expires=1&Signature=abc";
+        assertEquals(url, FastImageCacheKeys.filterQuery(url, rules(Collections.<String>emptySet(), null)));
+    }
+
+    @Test
+    public void keepsUrlWithoutQuery() {
+        assertEquals("https://example.com/a.png", FastImageCacheKeys.filterQuery("https://example.com/a.png", removing("Expires")));
+    }
+
+    @Test
+    public void removesParams() {
+        assertEquals(
+                "https://example.com/a.png?w=100",
+                FastImageCacheKeys.filterQuery("https://example.com/a.png?Expires=1&w=100&Signature=abc", removing("Expires", "Signature")));
+    }
+
+    @Test
+    public void keepsOnlyKeptParams() {
+        assertEquals(
+                "https://example.com/a.png?w=100&h=50",
+                FastImageCacheKeys.filterQuery("https://example.com/a.png?token=x&w=100&h=50", keeping("w", "h")));
+    }
+
+    @Test
+    public void keptParamsWinOverRemovedParams() {
+        assertEquals(
+                "https://example.com/a.png?w=100",
+                FastImageCacheKeys.filterQuery("https://example.com/a.png?w=100&h=50", rules(Collections.singleton("w"), Collections.singleton("w"))));
+    }
+
+    @Test
+    public void dropsQueryWhenNoParamIsLeft() {
+        assertEquals("https://example.com/a.png", FastImageCacheKeys.filterQuery("https://example.com/a.png?Expires=1", removing("Expires")));
+    }
+
+    @Test
+    public void keepsFragment() {
+        assertEquals(
+                "https://example.com/a.png?w=100#top",
+                FastImageCacheKeys.filterQuery("https://example.com/a.png?Expires=1&w=100#top", removing("Expires")));
+        assertEquals(
+                "https://example.com/a.png#top",
+                FastImageCacheKeys.filterQuery("https://example.com/a.png?Expires=1#top", removing("Expires")));
+    }
+
+    @Test
+    public void keepsParamsWithoutValue() {
+        assertEquals(
+                "https://example.com/a.png?raw",
+                FastImageCacheKeys.filterQuery("https://example.com/a.png?raw&Expires=1", removing("Expires")));
+        assertEquals(
+                "https://example.com/a.png?w=1",
+                FastImageCacheKeys.filterQuery("https://example.com/a.png?Expires&w=1", removing("Expires")));
+    }
+
+    @Test
+    public void skipsEmptyParams() {
+        assertEquals(
+                "https://example.com/a.png?w=1",
+                FastImageCacheKeys.filterQuery("https://example.com/a.png?&&w=1&", removing("Expires")));
+    }
+
+    @Test
+    public void matchesDecodedNamesAndKeepsEncodedParams() {
+        assertEquals(
+                "https://example.com/a.png?q=a%20b",
+                FastImageCacheKeys.filterQuery("https://example.com/a.png?X%2DAmz%2DDate=1&q=a%20b", removing("X-Amz-Date")));
+    }
+
+    @Test
+    public void keepsPlusInNames() {
+        assertEquals(
+                "https://example.com/a.png?a b=1",
+                FastImageCacheKeys.filterQuery("https://example.com/a.png?a+b=2&a b=1", removing("a+b")));
+    }
+
+    @Test
+    public void usesMalformedNamesAsIs() {
+        assertEquals(
+                "https://example.com/a.png?w=1",
+                FastImageCacheKeys.filterQuery("https://example.com/a.png?bad%zz=1&w=1", removing("bad%zz")));
+    }
+
+    @Test
+    public void keepsParamOrder() {
+        assertEquals(
+                "https://example.com/a.png?c=3&a=1&b=2",
+                FastImageCacheKeys.filterQuery("https://example.com/a.png?c=3&x=0&a=1&b=2", removing("x")));
+    }
+}
@@ -0,0 +1,63 @@
+package com.dylanvann.fastimage;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class FastImageSourceSetTest {
+    private static final List<FastImageSourceSet.Variant> VARIANTS = Arrays.asList(
+            new FastImageSourceSet.Variant("small", 100),
+            new FastImageSourceSet.Variant("medium", 200),
+            new FastImageSourceSet.Variant("large", 400)
+    );
+
+    private static String pick(int targetWidth, boolean isConstrainedNetwork, String... loadedUrls) {
+        return FastImageSourceSet.pick(VARIANTS, targetWidth, isConstrainedNetwork, Arrays.asList(loadedUrls)).uri;
+    }
+
+    @Test
+    public void picksNarrowestVariantAtLeastAsWideAsTarget() {
+        assertEquals("small", pick(50, false));
+        assertEquals("small", pick(100, false));
+        assertEquals("medium", pick(101, false));
+        assertEquals("large", pick(400, false));
+    }
+
+    @Test
+    public void picksWidestVariantWhenNoneIsWideEnough() {
+        assertEquals("large", pick(1000, false));
+    }
+
+    @Test
+    public void picksNarrowestVariantBeforeLayout() {
+        assertEquals("small", pick(0, false));
+    }
+
+    @Test
+    public void picksNextNarrowerVariantOnConstrainedNetwork() {
+        assertEquals("medium", pick(300, true));
+        assertEquals("small", pick(100, true));
+    }
+
+    @Test
+    public void picksWiderLoadedVariant() {
+        assertEquals("large", pick(150, false, "large"));
+        assertEquals("medium", pick(50, false, "medium", "large"));
+    }
+
+    @Test
+    public void ignoresNarrowerLoadedVariant() {
+        assertEquals("large", pick(300, false, "small"));
+    }
+
+    @Test
+    public void picksOnlyVariant() {
+        final List<FastImageSourceSet.Variant> variants = Collections.singletonList(new FastImageSourceSet.Variant("only", 100));
+
+        assertEquals("only", FastImageSourceSet.pick(variants, 300, true, Collections.<String>emptyList()).uri);
+    }
+}
@@ -0,0 +1,145 @@
+package com.dylanvann.fastimage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class FastImageValidatorsTest {
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("validators", null);
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private FastImageValidators open() {
+        return new FastImageValidators(file, DIRECT);
+    }
+
+    private int countLines() throws IOException {
+        final BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            int lines = 0;
+            while (reader.readLine() != null) {
+                lines++;
+            }
+            return lines;
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void readsBackRecordedValidators() {
+        open().record("https://example.com/a.png", "\"abc\"", null);
+        open().record("https://example.com/b.png", null, "Wed, 21 Oct 2015 07:28:00 GMT");
+
+        final FastImageValidators validators = open();
+        final FastImageValidators.Validators a = validators.get("https://example.com/a.png");
+        assertNotNull(a);
+        assertEquals("\"abc\"", a.eTag);
+        assertNull(a.lastModified);
+        final FastImageValidators.Validators b = validators.get("https://example.com/b.png");
+        assertNotNull(b);
+        assertNull(b.eTag);
+        assertEquals("Wed, 21 Oct 2015 07:28:00 GMT", b.lastModified);
+        assertNull(validators.get("https://example.com/c.png"));
+    }
+
+    @Test
+    public void lastRecordWins() {
+        final FastImageValidators validators = open();
+        validators.record("https://example.com/a.png", "\"1\"", null);
+        validators.record("https://example.com/a.png", "\"2\"", null);
+
+        assertEquals("\"2\"", open().get("https://example.com/a.png").eTag);
+    }
+
+    @Test
+    public void responseWithoutValidatorsRemovesUrl() {
+        final FastImageValidators validators = open();
+        validators.record("https://example.com/a.png", "\"1\"", null);
+        validators.record("https://example.com/a.png", null, null);
+
+        assertNull(validators.get("https://example.com/a.png"));
+        assertNull(open().get("https://example.com/a.png"));
+    }
+
+    @Test
+    public void removesUrlsBeforeLoading() {
+        open().record("https://example.com/a.png", "\"1\"", null);
+        open().remove(Collections.singletonList("https://example.com/a.png"));
+
+        assertNull(open().get("https://example.com/a.png"));
+    }
+
+    @Test
+    public void recordsSinceLaunchWinOverFile() {
+        open().record("https://example.com/a.png", "\"old\"", null);
+        final FastImageValidators validators = open();
+        validators.record("https://example.com/a.png", "\"new\"", null);
+
+        assertEquals("\"new\"", validators.get("https://example.com/a.png").eTag);
+    }
+
+    @Test
+    public void clearDeletesFile() {
+        final FastImageValidators validators = open();
+        validators.record("https://example.com/a.png", "\"1\"", null);
+        validators.clear();
+
+        assertNull(validators.get("https://example.com/a.png"));
+        assertFalse(file.exists());
+        assertNull(open().get("https://example.com/a.png"));
+    }
+
+    @Test
+    public void keepsMostRecentlyUsedUrls() {
+        final FastImageValidators validators = open();
+        for (int i = 0; i <= FastImageValidators.MAX_ENTRIES; i++) {
+            validators.record("https://example.com/" + i + ".png", "\"" + i + "\"", null);
+        }
+
+        assertNull(validators.get("https://example.com/0.png"));
+        assertNotNull(validators.get("https://example.com/1.png"));
+        assertNotNull(validators.get("https://example.com/" + FastImageValidators.MAX_ENTRIES + ".png"));
+    }
+
+    @Test
+    public void compactsFileOnLoad() throws IOException {
+        final FastImageValidators validators = open();
+        for (int i = 0; i <= FastImageValidators.COMPACTION_RATIO; i++) {
+            validators.record("https://example.com/a.png", "\"" + i + "\"", null);
+        }
+        assertEquals(FastImageValidators.COMPACTION_RATIO + 1, countLines());
+
+        assertEquals("\"" + FastImageValidators.COMPACTION_RATIO + "\"", open().get("https://example.com/a.png").eTag);
+        assertEquals(1, countLines());
+        assertEquals("\"" + FastImageValidators.COMPACTION_RATIO + "\"", open().get("https://example.com/a.png").eTag);
+    }
+}
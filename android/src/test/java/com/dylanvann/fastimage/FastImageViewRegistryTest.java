@@ -0,0 +1,94 @@
+package com.dylanvann.fastimage;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FastImageViewRegistryTest {
+    private final FastImageViewRegistry registry = new FastImageViewRegistry();
+
+    // Refs without a view, registering doesn't look at the view.
+    private static FastImageViewRegistry.ViewRef newRef() {
+        return new FastImageViewRegistry.ViewRef(null);
+    }
+
+    @Test
+    public void registersUnderKey() {
+        final FastImageViewRegistry.ViewRef ref = newRef();
+        registry.register("a", ref);
+
+        assertTrue(registry.hasViews("a"));
+        assertArrayEquals(new Object[]{ref}, registry.getViews("a"));
+        assertEquals("a", ref.registeredKey);
+    }
+
+    @Test
+    public void registeringTwiceUnderSameKeyIsNoOp() {
+        final FastImageViewRegistry.ViewRef ref = newRef();
+        registry.register("a", ref);
+        registry.register("a", ref);
+
+        assertEquals(1, registry.getViews("a").length);
+    }
+
+    @Test
+    public void registeringUnderOtherKeyMovesView() {
+        final FastImageViewRegistry.ViewRef ref = newRef();
+        registry.register("a", ref);
+        registry.register("b", ref);
+
+        assertFalse(registry.hasViews("a"));
+        assertArrayEquals(new Object[]{ref}, registry.getViews("b"));
+    }
+
+    @Test
+    public void unregisterReturnsKey() {
+        final FastImageViewRegistry.ViewRef ref = newRef();
+        registry.register("a", ref);
+
+        assertEquals("a", registry.unregister(ref));
+        assertNull(ref.registeredKey);
+        assertFalse(registry.hasViews("a"));
+        assertEquals(0, registry.getViews("a").length);
+        assertNull(registry.unregister(ref));
+    }
+
+    @Test
+    public void keepsOtherViewsOfKey() {
+        final FastImageViewRegistry.ViewRef first = newRef();
+        final FastImageViewRegistry.ViewRef second = newRef();
+        final FastImageViewRegistry.ViewRef third = newRef();
+        registry.register("a", first);
+        registry.register("a", second);
+        registry.register("a", third);
+
+        registry.unregister(second);
+
+        assertArrayEquals(new Object[]{first, third}, registry.getViews("a"));
+    }
+
+    @Test
+    public void reregistersAfterLastViewWasRemoved() {
+        final FastImageViewRegistry.ViewRef first = newRef();
+        final FastImageViewRegistry.ViewRef second = newRef();
+        registry.register("a", first);
+        registry.unregister(first);
+        registry.register("a", second);
+
+        assertArrayEquals(new Object[]{second}, registry.getViews("a"));
+    }
+
+    @Test
+    public void pruneRemovesCollectedViews() {
+        registry.register("a", newRef());
+        registry.register("a", newRef());
+
+        registry.prune("a");
+
+        assertFalse(registry.hasViews("a"));
+    }
+}
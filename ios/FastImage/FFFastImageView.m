@@ -178,6 +178,8 @@
         
         switch (_source.cacheControl) {
             case FFFCacheControlWeb:
+            case FFFCacheControlStaleWhileRevalidate:
+                // Shows the cached image, then refreshes it if the response changed.
                 options |= SDWebImageRefreshCached;
                 break;
             case FFFCacheControlCacheOnly:
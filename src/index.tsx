@@ -3,6 +3,7 @@ import {
     View,
     Image,
     NativeModules,
+    Platform,
     requireNativeComponent,
     StyleSheet,
     FlexStyle,
@@ -34,6 +35,29 @@ function isRegisteredStyle<T>(
 }
 
 
+/**
+ * Only Android picks a variant of `srcSet`, the widest one stands in for a missing `uri` elsewhere.
+ */
+function withSourceSetUri(source: Source | number, fallback?: boolean): Source | number {
+    if (typeof source !== 'object' || source.uri != null || !source.srcSet || source.srcSet.length === 0) return source
+    if (Platform.OS === 'android' && !fallback) return source
+    const widest = source.srcSet.reduce((a, b) => (b.width > a.width ? b : a))
+    return { ...source, uri: widest.uri }
+}
+
+/**
+ * `resolveAssetSource` gives bundled assets their intrinsic size, which isn't a size the caller
+ * asked to decode at, so the native view doesn't get it.
+ */
+function resolveSource(source: Source | number): ImageResolvedAssetSource {
+    const resolved = Image.resolveAssetSource(source as any)
+    if (typeof source !== 'number' || resolved == null) return resolved
+    const assetSource: Partial<ImageResolvedAssetSource> = { ...resolved }
+    delete assetSource.width
+    delete assetSource.height
+    return assetSource as ImageResolvedAssetSource
+}
+
 function findStyle<
     TStyle extends ViewStyle | TextStyle | ImageStyle,
     TResult extends TStyle extends (infer U)[] ? U : TStyle,
@@ -114,7 +138,7 @@ const priority = {
     high: 'high',
 } as const
 
-type Cache = 'immutable' | 'web' | 'cacheOnly'
+type Cache = 'immutable' | 'web' | 'cacheOnly' | 'staleWhileRevalidate'
 
 const cacheControl = {
     // Ignore headers, use uri as cache key, fetch only if not in cache.
@@ -123,6 +147,21 @@ const cacheControl = {
     web: 'web',
     // Only load from cache.
     cacheOnly: 'cacheOnly',
+    // Show the cached image right away, update it if it changed on the server.
+    staleWhileRevalidate: 'staleWhileRevalidate',
+} as const
+
+export type BitmapFormat = 'auto' | 'rgb565' | 'argb8888' | 'hardware'
+
+const bitmapFormat = {
+    // RGB_565 for opaque images, hardware bitmaps on Android O+ when not tinted.
+    auto: 'auto',
+    // Half the memory of ARGB_8888, images with alpha are still decoded as ARGB_8888.
+    rgb565: 'rgb565',
+    // Full quality software bitmaps.
+    argb8888: 'argb8888',
+    // Pixels are kept in graphics memory on Android O+.
+    hardware: 'hardware',
 } as const
 
 export type Source = {
@@ -130,6 +169,216 @@ export type Source = {
     headers?: { [key: string]: string }
     priority?: Priority
     cache?: Cache
+    /**
+     * Seconds a 'staleWhileRevalidate' image is shown from the cache before
+     * it is revalidated. Defaults to 300, 0 revalidates every time it is shown.
+     */
+    maxAge?: number
+    /**
+     * Key the image is cached by instead of its uri. **Android only.**
+     */
+    cacheKey?: string
+    format?: BitmapFormat
+    /**
+     * Size (in dp) the image is displayed at. When both are set the image is
+     * decoded at this size instead of at the measured size of the view.
+     */
+    width?: number
+    height?: number
+    /**
+     * Variants of the image with their width in pixels. The smallest one that
+     * covers the view is loaded. **Android only**, elsewhere `uri` is loaded,
+     * or the widest variant without one.
+     */
+    srcSet?: SourceVariant[]
+}
+
+export type SourceVariant = {
+    uri: string
+    width: number
+}
+
+export interface CacheConfig {
+    /**
+     * Maximum size of the disk cache in bytes. Defaults to 250MB.
+     */
+    diskCacheSize?: number
+    diskCacheLocation?: 'internal' | 'external'
+    /**
+     * Name of the disk cache directory.
+     */
+    diskCacheName?: string
+    /**
+     * Size of the memory cache in bytes. Defaults to a size based on the screen and device RAM.
+     */
+    memoryCacheSize?: number
+    bitmapPoolSize?: number
+    /**
+     * Size of a separate memory cache for small images, so they aren't evicted by large ones.
+     */
+    smallImageCacheSize?: number
+    /**
+     * Maximum size in bytes of the images kept in the small image cache. Defaults to 64KB.
+     */
+    smallImageMaxSize?: number
+    /**
+     * Threads used to download and decode images.
+     */
+    sourceThreadCount?: number
+    /**
+     * Threads used to read and decode images from the disk cache.
+     */
+    diskCacheThreadCount?: number
+    /**
+     * Maximum size in bytes of the HTTP cache used by `web` images. Defaults to 50MB.
+     */
+    httpCacheSize?: number
+    /**
+     * How long in milliseconds decoded `web` images are reused from memory. Defaults to 60000.
+     */
+    webMemoryCacheTtl?: number
+    /**
+     * Maximum number of image requests at once. Defaults to 64.
+     */
+    maxRequests?: number
+    /**
+     * Maximum number of image requests at once to one host. Defaults to 16.
+     */
+    maxRequestsPerHost?: number
+    /**
+     * Maximum number of idle connections kept open for images. Defaults to 8.
+     */
+    connectionPoolSize?: number
+    /**
+     * How long in milliseconds idle connections are kept open. Defaults to 5 minutes.
+     */
+    connectionKeepAlive?: number
+    /**
+     * Connect timeout of image requests in milliseconds, the app's by default.
+     */
+    connectTimeout?: number
+    /**
+     * Read timeout of image requests in milliseconds, the app's by default.
+     */
+    readTimeout?: number
+    /**
+     * How long in milliseconds DNS lookups of image hosts are cached. Defaults to 2 minutes.
+     */
+    dnsCacheTtl?: number
+    /**
+     * How long in milliseconds an image may keep loading while its view is
+     * off screen before the load is cancelled. Defaults to 1000.
+     */
+    offscreenCancelDelay?: number
+    /**
+     * Scroll speed in dp per second above which images that aren't in memory
+     * wait for the scroll to slow down. Defaults to 2500, 0 disables waiting.
+     */
+    flingVelocity?: number
+}
+
+export interface CacheInfo {
+    memoryCacheSize?: number
+    memoryCacheMaxSize?: number
+    bitmapPoolSize?: number
+    bitmapPoolMaxSize?: number
+    diskCacheSize?: number
+    diskCacheMaxSize?: number
+    /**
+     * Last `onTrimMemory` level received since the app was last resumed, 0 if none.
+     */
+    trimLevel: number
+}
+
+export interface NetworkStats {
+    requests: number
+    failures: number
+    bytes: number
+    /**
+     * Total milliseconds requests waited for a connection, queueing, DNS and
+     * connecting included.
+     */
+    waitTime: number
+    maxWaitTime: number
+    dnsTime: number
+    connectTime: number
+    connections: number
+    /**
+     * Total milliseconds from sending requests until their images were read.
+     */
+    transferTime: number
+    runningRequests?: number
+    queuedRequests?: number
+    openConnections?: number
+    idleConnections?: number
+}
+
+export interface ClearDiskCacheOptions {
+    /**
+     * Only clear images whose URL starts with this prefix.
+     */
+    urlPrefix?: string
+    /**
+     * Only clear images that were cached more than this many milliseconds ago.
+     */
+    olderThan?: number
+    /**
+     * Clear the oldest images until the disk cache is no larger than this many bytes.
+     */
+    maxSize?: number
+}
+
+export interface CacheKeyRules {
+    /**
+     * Query parameters left out of cache keys, e.g. the expiry and signature of signed URLs.
+     */
+    removeQueryParams?: string[]
+    /**
+     * When set only these query parameters are part of cache keys.
+     */
+    keepQueryParams?: string[]
+    /**
+     * Request headers that are part of cache keys.
+     */
+    headers?: string[]
+}
+
+export interface ClearDiskCacheResult {
+    files: number
+    bytes: number
+}
+
+export interface PreloadOptions {
+    /**
+     * Tag to cancel the preload with using `FastImage.cancelPreload`. **Android only.**
+     */
+    tag?: string
+}
+
+export interface PreloadResult {
+    uri: string
+    status: 'success' | 'error' | 'cancelled'
+    width?: number
+    height?: number
+    /**
+     * Path of the cached file.
+     */
+    path?: string
+    /**
+     * Size of the cached file.
+     */
+    bytes?: number
+    message?: string
+}
+
+export interface CachePathResult {
+    uri: string
+    cached: boolean
+    /**
+     * Path of the cached file, or of the file itself for local files.
+     */
+    path?: string
+    bytes?: number
 }
 
 export interface OnLoadEvent {
@@ -161,11 +410,49 @@ export interface ImageStyle extends FlexStyle, TransformsStyle, ShadowStyleIOS {
     opacity?: number
 }
 
+export type EventMode = 'direct' | 'batched'
+
+// Tells the native side which events are listened to so it can skip the others.
+// Must match FastImageViewWithUrl.java.
+const LISTENER_LOAD_START = 1
+const LISTENER_PROGRESS = 1 << 1
+const LISTENER_LOAD = 1 << 2
+const LISTENER_ERROR = 1 << 3
+const LISTENER_LOAD_END = 1 << 4
+
+function getListenerMask({ onLoadStart, onProgress, onLoad, onError, onLoadEnd }: FastImageProps): number {
+    return (
+        (onLoadStart ? LISTENER_LOAD_START : 0) |
+        (onProgress ? LISTENER_PROGRESS : 0) |
+        (onLoad ? LISTENER_LOAD : 0) |
+        (onError ? LISTENER_ERROR : 0) |
+        (onLoadEnd ? LISTENER_LOAD_END : 0)
+    )
+}
+
 export interface FastImageProps extends AccessibilityProps, ViewProps {
     source: Source | number
     resizeMode?: ResizeMode
     fallback?: boolean
 
+    /**
+     * How events are sent to JS. **Android only.**
+     *
+     * With `'batched'` the events of every image are buffered and sent together once per frame,
+     * and only the latest progress event of each image is kept.
+     */
+    eventMode?: EventMode
+
+    /**
+     * Minimum time in milliseconds between two `onProgress` calls. **Android only.**
+     */
+    progressInterval?: number
+
+    /**
+     * A small version of the image, shown while `source` loads. **Android only.**
+     */
+    thumbnailSource?: Source | number
+
     onLoadStart?(): void
 
     onProgress?(event: OnProgressEvent): void
@@ -222,7 +509,49 @@ export default class FastImage extends React.PureComponent<FastImageProps, FastI
     static priority = priority
     static resizeMode = resizeMode
     static cacheControl = cacheControl
-    static preload = (sources: Source[]) => FastImageViewNativeModule.preload(sources)
+    static format = bitmapFormat
+    static configure = (config: CacheConfig): Promise<boolean> =>
+        Platform.OS === 'android'
+            ? FastImageViewNativeModule.configure(config)
+            : Promise.resolve(false)
+    static setCacheKeyRules = (rules: CacheKeyRules | null): void => {
+        if (Platform.OS === 'android') FastImageViewNativeModule.setCacheKeyRules(rules)
+    }
+    static getCacheInfo = (): Promise<CacheInfo> =>
+        Platform.OS === 'android'
+            ? FastImageViewNativeModule.getCacheInfo()
+            : Promise.resolve({ trimLevel: 0 })
+    static getNetworkStats = (): Promise<NetworkStats | null> =>
+        Platform.OS === 'android'
+            ? FastImageViewNativeModule.getNetworkStats()
+            : Promise.resolve(null)
+    static pauseRequests = (): void => {
+        if (Platform.OS === 'android') FastImageViewNativeModule.pauseRequests()
+    }
+    static resumeRequests = (): void => {
+        if (Platform.OS === 'android') FastImageViewNativeModule.resumeRequests()
+    }
+    static invalidate = (sources: Source[]): Promise<number> =>
+        Platform.OS === 'android'
+            ? FastImageViewNativeModule.invalidate(sources)
+            : Promise.resolve(0)
+    static invalidatePrefix = (prefix: string): Promise<number> =>
+        Platform.OS === 'android'
+            ? FastImageViewNativeModule.invalidatePrefix(prefix)
+            : Promise.resolve(0)
+    static preload = (sources: Source[], options?: PreloadOptions): Promise<PreloadResult[]> =>
+        Platform.OS === 'android'
+            ? FastImageViewNativeModule.preload(sources, options || null)
+            : Promise.resolve(FastImageViewNativeModule.preload(sources)).then(() => [])
+    static cancelPreload = (tag: string): void => {
+        if (Platform.OS === 'android') FastImageViewNativeModule.cancelPreload(tag)
+    }
+    static getCachePaths = (sources: Source[]): Promise<CachePathResult[]> =>
+        Platform.OS === 'android'
+            ? FastImageViewNativeModule.getCachePaths(sources)
+            : Promise.resolve(sources.map((source) => ({ uri: source.uri as string, cached: false })))
+    static isCached = (sources: Source[]): Promise<boolean[]> =>
+        FastImage.getCachePaths(sources).then((results) => results.map((result) => result.cached))
     static preloadDimension = (source: Source) => FastImageViewNativeModule.preloadDimension(source)
     static displayName = 'FastImage'
 
@@ -235,19 +564,31 @@ export default class FastImage extends React.PureComponent<FastImageProps, FastI
     }
 
     refresh() {
+        this.dispatchCommand('forceRefreshImage')
+    }
+
+    /**
+     * Check whether the image changed on the server with a conditional request, and only download
+     * and decode it again if it did. Behaves like `refresh()` on iOS.
+     */
+    revalidate() {
+        this.dispatchCommand(Platform.OS === 'android' ? 'revalidateImage' : 'forceRefreshImage')
+    }
+
+    private dispatchCommand(command: 'forceRefreshImage' | 'revalidateImage') {
         if (this.fastImageRef.current == null) {
             if (this.props.fallback) throw new Error('Refreshing only works with `fallback={false}`!')
             else throw new Error('FastImageView ref was not set!')
         }
         UIManager.dispatchViewManagerCommand(
             findNodeHandle(this.fastImageRef.current),
-            UIManager.getViewManagerConfig('FastImageView').Commands
-                .forceRefreshImage,
+            UIManager.getViewManagerConfig('FastImageView').Commands[command],
             []
         )
     }
 
-    static getDerivedStateFromProps({ style, source, fallback }: FastImageProps, previousState: FastImageState): FastImageState | null {
+    static getDerivedStateFromProps({ style, source: sourceProp, fallback }: FastImageProps, previousState: FastImageState): FastImageState | null {
+        const source = withSourceSetUri(sourceProp, fallback)
         let resolvedSource: ImageResolvedAssetSource;
         if (fallback) {
             const cleanedSource = { ...(source as any) }
@@ -256,7 +597,7 @@ export default class FastImage extends React.PureComponent<FastImageProps, FastI
         } else {
             const foundBorderRadius = findStyle(style, 'borderRadius');
             const borderRadius = foundBorderRadius != null ? PixelRatio.roundToNearestPixel(foundBorderRadius) : 0;
-            resolvedSource = Image.resolveAssetSource(source instanceof Object && borderRadius > 0
+            resolvedSource = resolveSource(source instanceof Object && borderRadius > 0
                 ? { ...(source as any), borderRadius: borderRadius }
                 : source)
         }
@@ -268,7 +609,7 @@ export default class FastImage extends React.PureComponent<FastImageProps, FastI
     }
 
     render() {
-        const { fallback, source, style, onLoad, onProgress, onLoadEnd, onLoadStart, onError, children, tintColor, resizeMode, nativeID, ...props } = this.props
+        const { fallback, source, style, onLoad, onProgress, onLoadEnd, onLoadStart, onError, children, tintColor, resizeMode, nativeID, eventMode, progressInterval, thumbnailSource, ...props } = this.props
 
         if (fallback) {
             return (
@@ -296,12 +637,16 @@ export default class FastImage extends React.PureComponent<FastImageProps, FastI
                     tintColor={tintColor}
                     style={StyleSheet.absoluteFill}
                     source={this.state.resolvedSource}
+                    thumbnailSource={thumbnailSource != null ? resolveSource(thumbnailSource) : undefined}
                     onFastImageLoadStart={onLoadStart}
                     onFastImageProgress={onProgress}
                     onFastImageLoad={onLoad}
                     onFastImageError={onError}
                     onFastImageLoadEnd={onLoadEnd}
+                    listenerMask={getListenerMask(this.props)}
                     resizeMode={resizeMode}
+                    eventMode={eventMode}
+                    progressInterval={progressInterval}
                     ref={this.fastImageRef}
                 />
                 {children}
@@ -314,7 +659,10 @@ export default class FastImage extends React.PureComponent<FastImageProps, FastI
 
 export const clearMemoryCache = () => FastImageViewNativeModule.clearMemoryCache()
 
-export const  clearDiskCache = () => FastImageViewNativeModule.clearDiskCache()
+export const clearDiskCache = (options?: ClearDiskCacheOptions): Promise<ClearDiskCacheResult | void> =>
+    Platform.OS === 'android'
+        ? FastImageViewNativeModule.clearDiskCache(options || null)
+        : FastImageViewNativeModule.clearDiskCache()
 
 const styles = StyleSheet.create({
     imageContainer: {